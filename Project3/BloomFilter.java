@@ -0,0 +1,119 @@
+/****************************************************************************************
+ * @file  BloomFilter.java
+ */
+
+/****************************************************************************************
+ * This class implements a Bloom filter over 32-bit hash codes (e.g., the hash of a
+ * tuple's join columns).  A Bloom filter answers "might this hash have been added?"
+ * with no false negatives and a tunable false-positive probability, in a few bits per
+ * element.  The k probe positions are derived from one 64-bit mix of the hash by
+ * double hashing (h1 + i * h2).
+ */
+class BloomFilter
+{
+    /** The bit array.
+     */
+    private final long [] bits;
+
+    /** The number of bits (m).
+     */
+    private final long m;
+
+    /** The number of probe positions per element (k).
+     */
+    private final int k;
+
+    /** The number of elements added, and the numbers of tests made and passed.
+     */
+    private long added = 0, tested = 0, passed = 0;
+
+    /************************************************************************************
+     * Construct a Bloom filter sized for the expected number of elements and the
+     * target false-positive probability, i.e., m = -n ln p / (ln 2)^2 bits and
+     * k = (m / n) ln 2 probes.
+     *
+     * @param n    the expected number of elements
+     * @param fpp  the target false-positive probability (e.g., 0.01)
+     */
+    BloomFilter (long n, double fpp)
+    {
+        n    = Math.max (1, n);
+        long size = (long) Math.ceil (-n * Math.log (fpp) / (Math.log (2) * Math.log (2)));
+        m    = Math.max (64, (size + 63) & ~63L);
+        k    = Math.max (1, (int) Math.round ((double) m / n * Math.log (2)));
+        bits = new long [(int) (m >>> 6)];
+    } // constructor
+
+    /************************************************************************************
+     * Add the element with the given hash code.
+     *
+     * @param hash  the element's hash code
+     */
+    void add (int hash)
+    {
+        long x  = mix (hash);
+        int  h1 = (int) x, h2 = (int) (x >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            long b = Integer.toUnsignedLong (h1 + i * h2) % m;
+            bits [(int) (b >>> 6)] |= 1L << b;
+        } // for
+        added++;
+    } // add
+
+    /************************************************************************************
+     * Determine whether the element with the given hash code might have been added
+     * (false means it definitely was not).
+     *
+     * @param hash  the element's hash code
+     * @return  whether the element might be in the filter
+     */
+    boolean mightContain (int hash)
+    {
+        tested++;
+        long x  = mix (hash);
+        int  h1 = (int) x, h2 = (int) (x >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            long b = Integer.toUnsignedLong (h1 + i * h2) % m;
+            if ((bits [(int) (b >>> 6)] & (1L << b)) == 0) return false;
+        } // for
+        passed++;
+        return true;
+    } // mightContain
+
+    /************************************************************************************
+     * Return the expected false-positive probability for the elements actually added,
+     * (1 - e^(-k n / m))^k.
+     *
+     * @return  the expected false-positive probability
+     */
+    double fpp ()
+    {
+        return Math.pow (1 - Math.exp (-k * (double) added / m), k);
+    } // fpp
+
+    /************************************************************************************
+     * Describe the filter and how it performed, e.g., for a plan.
+     *
+     * @return  the description
+     */
+    public String toString ()
+    {
+        return String.format ("Bloom (%d bits, %d hashes, fpp %.4f, passed %d of %d)",
+                              m, k, fpp (), passed, tested);
+    } // toString
+
+    /************************************************************************************
+     * Spread the bits of a 32-bit hash over 64 bits (the finalizer of SplitMix64).
+     *
+     * @param h  the hash code
+     * @return  the mixed 64-bit value
+     */
+    private static long mix (int h)
+    {
+        long z = h * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    } // mix
+
+} // BloomFilter class
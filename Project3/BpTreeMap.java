@@ -63,6 +63,10 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     private int count = 0;
 
+    /** The separator key passed up to the parent by the most recent node split.
+     */
+    private K promoted;
+
     /********************************************************************************
      * Construct an empty B+Tree map.
      * @param _classK  the class for keys (K)
@@ -85,20 +89,142 @@ public class BpTreeMap <K extends Comparable <K>, V>
     } // comparator
 
     /********************************************************************************
-     * Return a set containing all the entries as pairs of keys and values.
+     * Return a set containing all the entries as pairs of keys and values, in
+     * leaf (key) order.
      * @return  the set view of the map
      */
     public Set <Map.Entry <K, V>> entrySet ()
     {
-        Set <Map.Entry <K, V>> enSet = new HashSet <> ();
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            enSet.add(entry);
-        }
-
+        Set <Map.Entry <K, V>> enSet = new LinkedHashSet <> ();
+        collect (root, null, null, enSet);
         return enSet;
     } // entrySet
 
+    /********************************************************************************
+     * Recursive helper function for collecting, left to right, the entries with
+     * fromKey <= key < toKey from the leaves reachable from node n.  Subtrees that
+     * cannot hold keys in the range are skipped.  A null bound means unbounded.
+     * @param n        the current node
+     * @param fromKey  the lower bound (inclusive), or null
+     * @param toKey    the upper bound (exclusive), or null
+     * @param enSet    the set to add the entries to
+     */
+    @SuppressWarnings("unchecked")
+    private void collect (Node n, K fromKey, K toKey, Set <Map.Entry <K, V>> enSet)
+    {
+        if (n.isLeaf) {
+            for (int i = 0; i < n.nKeys; i++) {
+                if (fromKey != null && n.key [i].compareTo (fromKey) < 0) continue;
+                if (toKey != null && n.key [i].compareTo (toKey) >= 0) break;
+                enSet.add (new AbstractMap.SimpleEntry <> (n.key [i], (V) n.ref [i]));
+            } // for
+        } else {
+            for (int i = 0; i <= n.nKeys; i++) {
+                if (fromKey != null && i < n.nKeys && n.key [i].compareTo (fromKey) < 0) continue;
+                if (toKey != null && i > 0 && n.key [i - 1].compareTo (toKey) >= 0) break;
+                collect ((Node) n.ref [i], fromKey, toKey, enSet);
+            } // for
+        } // if
+    } // collect
+
+    /********************************************************************************
+     * Return the values of the entries whose keys lie between fromKey and toKey, in
+     * key order.  Only the leaves that can hold keys in the range are visited, and no
+     * submap is built.  A null bound means unbounded.
+     * @param fromKey        the lower bound, or null
+     * @param fromInclusive  whether a key equal to fromKey qualifies
+     * @param toKey          the upper bound, or null
+     * @param toInclusive    whether a key equal to toKey qualifies
+     * @return  the list of values in the range
+     */
+    public List <V> values (K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+    {
+        List <V> vals = new ArrayList <> ();
+        values (root, fromKey, fromInclusive, toKey, toInclusive, vals);
+        return vals;
+    } // values
+
+    /********************************************************************************
+     * Recursive helper function for adding, left to right, the values of the entries
+     * in the range from the leaves reachable from node n.
+     * @param n              the current node
+     * @param fromKey        the lower bound, or null
+     * @param fromInclusive  whether a key equal to fromKey qualifies
+     * @param toKey          the upper bound, or null
+     * @param toInclusive    whether a key equal to toKey qualifies
+     * @param vals           the list to add the values to
+     */
+    @SuppressWarnings("unchecked")
+    private void values (Node n, K fromKey, boolean fromInclusive, K toKey, boolean toInclusive, List <V> vals)
+    {
+        if (n.isLeaf) {
+            for (int i = 0; i < n.nKeys; i++) {
+                if (fromKey != null) {
+                    int c = n.key [i].compareTo (fromKey);
+                    if (c < 0 || c == 0 && ! fromInclusive) continue;
+                } // if
+                if (toKey != null) {
+                    int c = n.key [i].compareTo (toKey);
+                    if (c > 0 || c == 0 && ! toInclusive) break;
+                } // if
+                vals.add ((V) n.ref [i]);
+            } // for
+        } else {
+            for (int i = 0; i <= n.nKeys; i++) {
+                if (fromKey != null && i < n.nKeys && n.key [i].compareTo (fromKey) < 0) continue;
+                if (toKey != null && i > 0 && n.key [i - 1].compareTo (toKey) > 0) break;
+                values ((Node) n.ref [i], fromKey, fromInclusive, toKey, toInclusive, vals);
+            } // for
+        } // if
+    } // values
+
+    /********************************************************************************
+     * Return the values of the first (smallest) n keys, in key order.  Only the
+     * leftmost leaves holding them are visited.
+     * @param n  the number of values wanted
+     * @return  the list of at most n values
+     */
+    public List <V> firstValues (int n)
+    {
+        List <V> vals = new ArrayList <> (Math.max (0, Math.min (n, 1024)));
+        firstValues (root, n, vals);
+        return vals;
+    } // firstValues
+
+    /********************************************************************************
+     * Recursive helper function for adding the values of node n's subtree to vals,
+     * left to right, until vals holds max values.
+     * @param n     the current node
+     * @param max   the number of values wanted
+     * @param vals  the list of values
+     */
+    @SuppressWarnings("unchecked")
+    private void firstValues (Node n, int max, List <V> vals)
+    {
+        if (n.isLeaf) {
+            for (int i = 0; i < n.nKeys && vals.size () < max; i++) vals.add ((V) n.ref [i]);
+        } else {
+            for (int i = 0; i <= n.nKeys && vals.size () < max; i++) firstValues ((Node) n.ref [i], max, vals);
+        } // if
+    } // firstValues
+
+    /********************************************************************************
+     * Build a new B+Tree map holding the entries with fromKey <= key < toKey.  This
+     * copies the entries; use values (fromKey, .., toKey, ..) to just read a range.
+     * @param fromKey  the lower bound (inclusive), or null
+     * @param toKey    the upper bound (exclusive), or null
+     * @return  the submap
+     */
+    private BpTreeMap <K, V> range (K fromKey, K toKey)
+    {
+        Set <Map.Entry <K, V>> enSet = new LinkedHashSet <> ();
+        collect (root, fromKey, toKey, enSet);
+
+        BpTreeMap <K, V> map = new BpTreeMap <> (classK, classV);
+        for (Map.Entry <K, V> e : enSet) map.put (e.getKey (), e.getValue ());
+        return map;
+    } // range
+
     /********************************************************************************
      * Given the key, look up the value in the B+Tree map.
      * @param key  the key used for look up
@@ -111,18 +237,25 @@ public class BpTreeMap <K extends Comparable <K>, V>
     } // get
 
     /********************************************************************************
-     * Put the key-value pair in the B+Tree map.
+     * Put the key-value pair in the B+Tree map.  If the key is already present, its
+     * value is replaced.
      * @param key    the key to insert
      * @param value  the value to insert
      * @return  null (not the previous value)
      */
     public V put (K key, V value)
     {
-        // Node[] node = new Node[2];
-        // node = searchForCorrectNode (key, root, null); // node[0] is the correct node and node[1] is parent
-        Node n = searchForCorrectNode(key, root);
-        // System.out.println("AfterCorrectNode: " + (n == root));
-        insert (key, value, n, n.parent);
+        Node sib = insert (key, value, root);
+        if (sib != null) {                                 // root split => grow a level
+            Node newRoot   = new Node (false, null);
+            newRoot.key [0] = promoted;
+            newRoot.ref [0] = root;
+            newRoot.ref [1] = sib;
+            newRoot.nKeys   = 1;
+            root.parent     = newRoot;
+            sib.parent      = newRoot;
+            root            = newRoot;
+        } // if
         return null;
     } // put
 
@@ -132,14 +265,10 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public K firstKey () 
     {
-        K key = null;
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            if(key.compareTo(entry.getKey()) < 0)
-               key = entry.getKey();
-        }
-
-        return key;
+        Node n = root;
+        while (! n.isLeaf) n = (Node) n.ref [0];
+        if (n.nKeys == 0) throw new NoSuchElementException ();
+        return n.key [0];
     } // firstKey
 
     /********************************************************************************
@@ -148,14 +277,10 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public K lastKey () 
     {
-        K key = null;
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            if(key.compareTo(entry.getKey()) >= 0)
-                key = entry.getKey();
-        }
-
-        return key;
+        Node n = root;
+        while (! n.isLeaf) n = (Node) n.ref [n.nKeys];
+        if (n.nKeys == 0) throw new NoSuchElementException ();
+        return n.key [n.nKeys - 1];
     } // lastKey
 
     /********************************************************************************
@@ -164,22 +289,7 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public SortedMap <K,V> headMap (K toKey)
     {
-
-        BpTreeMap<K,V> headMap = new BpTreeMap<>(this.classK,this.classV);
-
-        K key;
-        V value;
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            key = entry.getKey();
-            value = entry.getValue();
-            if(!key.equals(toKey))
-                headMap.put(key,value);
-            else
-                break;
-        }
-
-        return headMap;
+        return range (null, toKey);
     } // headMap
 
     /********************************************************************************
@@ -188,19 +298,7 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public SortedMap <K,V> tailMap (K fromKey)
     {
-        BpTreeMap<K,V> tailMap = new BpTreeMap<>(this.classK,this.classV);
-
-        K key;
-        V value;
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            key = entry.getKey();
-            value = entry.getValue();
-            if(key.compareTo(fromKey) >= 0)
-                tailMap.put(key,value);
-        }
-
-        return tailMap;
+        return range (fromKey, null);
     } // tailMap
 
     /********************************************************************************
@@ -210,19 +308,7 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public SortedMap <K,V> subMap (K fromKey, K toKey)
     {
-        BpTreeMap<K,V> subMap = new BpTreeMap<>(this.classK,this.classV);
-
-        K key;
-        V value;
-
-        for(Map.Entry<K,V> entry: this.entrySet()) {
-            key = entry.getKey();
-            value = entry.getValue();
-            if((key.compareTo(fromKey) >= 0) && (key.compareTo(toKey) < 0))
-                subMap.put(key,value);
-        }
-
-        return subMap;
+        return range (fromKey, toKey);
     } // subMap
 
     /********************************************************************************
@@ -285,109 +371,49 @@ public class BpTreeMap <K extends Comparable <K>, V>
     } // find
 
     /********************************************************************************
-     * Recursive helper function for finding the correct node to insert a key in.
-     * @param key  the key to find
-     * @param n  the current node
-     * @param p  the parent node
+     * Recursive helper function for inserting a key in B+trees.  Descends to the
+     * leaf that should hold the key (using the same rule as find) and splits nodes
+     * on the way back up when they overflow.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @param n      the current node
+     * @return  the new right sibling if n was split (its separator is left in
+     *          promoted), otherwise null
      */
-    private Node searchForCorrectNode(K key, Node n)
+    @SuppressWarnings("unchecked")
+    private Node insert (K key, V value, Node n)
     {
+        int i = 0;
         if (n.isLeaf) {
-            return n;
-        } else {
-            for (int i = 0; i < n.nKeys; i++) {
-                if (n.key[i].compareTo(key) < 0)
-                    searchForCorrectNode(key, (Node) n.ref[i]);
-                // else if (i == n.nKeys - 1)
-                    // searchForCorrectNode(key, (Node) n.ref[i+1]);
-            }
-            return searchForCorrectNode(key, (Node) n.ref[n.nKeys]);
-        }
-    }
-
-    /********************************************************************************
-     * Recursive helper function for inserting a key in B+trees.
-     * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
-     * @param p    the parent node
-     */
-    private void insert (K key, V ref, Node n, Node p)
-    {
-        boolean b = true;
-        // System.out.println("Insert");
-        if (n.nKeys < ORDER - 1) {
-            // System.out.println("First if");
-            for (int i = 0; i < n.nKeys; i++) {
-                if (key.compareTo(n.key[i]) < 0) {
-                    wedge (key, ref, n, i);
-                    b = false;
-                } 
-                // else if (i == n.nKeys - 1) {
-                    // wedge (key, ref, n, n.nKeys);
-                // }
-            }
-            if (b) {
-                wedge (key, ref, n, n.nKeys);
-            }
-            if (n.nKeys == 0) {
-                wedge (key, ref, n, 0);
-            }
-        } else if ((p != null) && (p.nKeys < ORDER - 1)) {
-            // System.out.println("First else if");
-            Node sn = split(key, ref, n);
-            for (int i = 0; i < p.nKeys; i++) { // Point parent to the new split node
-                if (key.compareTo(p.key[i]) < 0) {
-                    wedge (key, (V) sn, p, i);
-                } else if (i == p.nKeys - 1) {
-                    wedge (key, (V) sn, p, p.nKeys);
-                }
-            }
-        } else if ((p != null) && (p != root)){
-            // System.out.println("second else if");
-            Node sn = split(key, ref, p);
-            insert(sn.key[0], (V) sn, p, p.parent);
-        } else {
-            // System.out.println("else");
-            Node newRoot = new Node(false, null);
-            root = newRoot;
-            n.parent = root;
-            Node sn = split(key, ref, n);
-            root.key[0] = sn.key[0];
-            root.ref[0] = n;
-            root.ref[1] = sn;
-        }
+            while (i < n.nKeys && n.key [i].compareTo (key) < 0) i++;
+            if (i < n.nKeys && n.key [i].compareTo (key) == 0) {
+                n.ref [i] = value;                         // replace existing value
+                return null;
+            } // if
+            if (n.nKeys < ORDER - 1) {
+                wedge (key, value, n, i);
+                return null;
+            } // if
+            return splitLeaf (key, value, n, i);
+        } // if
 
-        // if (n.isLeaf) { // leaf node
-            // if (n.nKeys < ORDER - 1) {
-                // for (int i = 0; i < n.nKeys; i++) {
-                    // K k_i = n.key [i];
-                    // if (key.compareTo (k_i) < 0) {
-                        // wedge (key, ref, n, i);
-                        // return;
-                    // } else if (key.equals (k_i)) {
-                        // out.println ("BpTreeMap:insert: attempt to insert duplicate key = " + key);
-                    // } // if
-                // } // for
-                // wedge (key, ref, n, n.nKeys);
-                // return;
-            // } else if (p.nKeys < ORDER - 1) {
-                // Node sib = split (key, ref, n);
-                // insert(n.key[i], n.ref, p, null); // point parent to newly split key
-                // return;
-            // } else {
-                // Node sib = split (key, ref, n);
-            // }
-        // } else { // internal node
-            // for (int i = 0; i < n.nKeys; i++) { // find correct node
-                // K k_i = n.key[i];
-                // if (key.compareTo(k_i) <= 0) {
-                    // insert(key, ref, (Node) n.ref[i], n);
-                    // return;
-                // }
-            // }
-        // }
+        while (i < n.nKeys && key.compareTo (n.key [i]) > 0) i++;
+        Node sib = insert (key, value, (Node) n.ref [i]);
+        if (sib == null) return null;
 
+        K sep = promoted;
+        if (n.nKeys < ORDER - 1) {
+            for (int j = n.nKeys; j > i; j--) {
+                n.key [j]     = n.key [j - 1];
+                n.ref [j + 1] = n.ref [j];
+            } // for
+            n.key [i]     = sep;
+            n.ref [i + 1] = sib;
+            sib.parent    = n;
+            n.nKeys++;
+            return null;
+        } // if
+        return splitInternal (sep, sib, n, i);
     } // insert
 
     /********************************************************************************
@@ -409,51 +435,73 @@ public class BpTreeMap <K extends Comparable <K>, V>
     } // wedge
 
     /********************************************************************************
-     * Split node n and return the newly created node.
-     * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
+     * Split full leaf n while inserting the key-value pair at position i.  The lower
+     * half stays in n and the upper half moves to the returned sibling.  The largest
+     * key remaining in n becomes the separator (promoted).
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @param n      the full leaf node
+     * @param i      the insertion position within node n
+     * @return  the newly created right sibling
      */
-    private Node split (K key, V ref, Node n)
+    @SuppressWarnings("unchecked")
+    private Node splitLeaf (K key, V value, Node n, int i)
     {
-        K tempKeys[] = (K []) Array.newInstance (classK, ORDER);
-        V tempRefs[] = (V []) Array.newInstance (classV, ORDER + 1);
+        K []      tk = (K []) Array.newInstance (classK, ORDER);
+        Object [] tr = new Object [ORDER];
+        for (int j = 0, k = 0; j < ORDER; j++) {
+            if (j == i) { tk [j] = key; tr [j] = value; }
+            else        { tk [j] = n.key [k]; tr [j] = n.ref [k]; k++; }
+        } // for
 
-        for (int i = 0; i < n.nKeys; i++) {
-            tempKeys[i] = n.key[i];
-        }
-        for (int i = 0; i <= n.nKeys; i++) {
-            tempRefs[i] = (V) n.ref[i];
-        }
-        // Arrays.sort(tempKeys);
-        // Arrays.sort(tempRefs);
-
-        int mid = ORDER / 2;
-        Node sn = new Node(n.isLeaf, n.parent);
-        sn = n;
-
-        Arrays.fill(n.key, null);
-        Arrays.fill(n.ref, null);
-
-        n.key = Arrays.copyOfRange(tempKeys, 0, mid);
-        sn.key = Arrays.copyOfRange(tempKeys, mid, tempKeys.length - 1);
-        n.ref = Arrays.copyOfRange(tempRefs, 0, mid);
-        sn.ref = Arrays.copyOfRange(tempRefs, mid, tempRefs.length - 1);
-        // for (int i = 0; i < mid; i++) {
-            // n.key[i] = tempKeys[i];
-        // }
-        // for (int i = 0; i < tempKeys.length; i++) {
-            // sn.key[i] = tempKeys[i + mid];
-        // }
-        // for (int i = 0; i < mid + 1; i++) {
-            // n.ref[i] = (V) tempRefs[i];
-        // }
-        // for (int i = 0; i < tempRefs.length; i++) {
-            // sn.ref[i] = (V) tempRefs[i + mid];
-        // }
+        int  mid = (ORDER + 1) / 2;
+        Node sn  = new Node (true, n.parent);
+        Arrays.fill (n.key, null);
+        Arrays.fill (n.ref, null);
+        for (int j = 0; j < mid; j++)     { n.key [j] = tk [j]; n.ref [j] = tr [j]; }
+        for (int j = mid; j < ORDER; j++) { sn.key [j - mid] = tk [j]; sn.ref [j - mid] = tr [j]; }
+        n.nKeys  = mid;
+        sn.nKeys = ORDER - mid;
+
+        promoted = n.key [mid - 1];
+        return sn;
+    } // splitLeaf
+
+    /********************************************************************************
+     * Split full internal node n while inserting separator sep at position i (with
+     * child at position i + 1).  The middle key is pushed up (promoted) rather than
+     * kept in either node.
+     * @param sep    the separator key to insert
+     * @param child  the child node to the right of sep
+     * @param n      the full internal node
+     * @param i      the insertion position within node n
+     * @return  the newly created right sibling
+     */
+    @SuppressWarnings("unchecked")
+    private Node splitInternal (K sep, Node child, Node n, int i)
+    {
+        K []      tk = (K []) Array.newInstance (classK, ORDER);
+        Object [] tr = new Object [ORDER + 1];
+        tr [0] = n.ref [0];
+        for (int j = 0, k = 0; j < ORDER; j++) {
+            if (j == i) { tk [j] = sep; tr [j + 1] = child; }
+            else        { tk [j] = n.key [k]; tr [j + 1] = n.ref [k + 1]; k++; }
+        } // for
 
+        int  mid = ORDER / 2;
+        Node sn  = new Node (false, n.parent);
+        Arrays.fill (n.key, null);
+        Arrays.fill (n.ref, null);
+        for (int j = 0; j < mid; j++)         n.key [j] = tk [j];
+        for (int j = 0; j <= mid; j++)        { n.ref [j] = tr [j]; ((Node) tr [j]).parent = n; }
+        for (int j = mid + 1; j < ORDER; j++) sn.key [j - mid - 1] = tk [j];
+        for (int j = mid + 1; j <= ORDER; j++) { sn.ref [j - mid - 1] = tr [j]; ((Node) tr [j]).parent = sn; }
+        n.nKeys  = mid;
+        sn.nKeys = ORDER - mid - 1;
+
+        promoted = tk [mid];
         return sn;
-    } // split
+    } // splitInternal
 
     /********************************************************************************
      * The main method used for testing.
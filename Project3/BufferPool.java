@@ -0,0 +1,230 @@
+/****************************************************************************************
+ * @file  BufferPool.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class implements a buffer pool holding a fixed number of frames, each of which
+ * may hold one page of a PageFile.  Callers pin a page while using it and unpin it
+ * afterwards, saying whether they changed it.  When a page that is not in the pool is
+ * pinned, a frame is chosen for it by the CLOCK algorithm: a hand sweeps the frames,
+ * skipping pinned ones and giving recently used ones (reference bit set) a second
+ * chance.  A dirty page is forced to its file before its frame is reused.
+ */
+class BufferPool
+{
+    /************************************************************************************
+     * This inner class is a frame of the pool.
+     */
+    static final class Frame
+    {
+        PageFile         file;         // the file of the page held (null if free)
+        int              pageNo;       // the page number of the page held
+        MappedByteBuffer buf;          // the page
+        int              pins;         // the number of users of the page
+        boolean          dirty;        // whether the page was changed since it was forced
+        boolean          ref;          // whether the page was used since the hand passed
+
+        /** Return the page held in this frame. */
+        ByteBuffer page () { return buf; }
+    } // Frame inner class
+
+    /** The frames of the pool.
+     */
+    private final Frame [] frames;
+
+    /** Map from page (file id and page number) to the frame holding it.
+     */
+    private final Map <Long, Frame> resident;
+
+    /** The files opened over this pool and not yet closed (see attach and drop).
+     */
+    private final Set <PageFile> attached = new HashSet <> ();
+
+    /** The position of the clock hand.
+     */
+    private int hand = 0;
+
+    /** Statistics: the numbers of hits, misses and evictions.
+     */
+    private long hits = 0, misses = 0, evictions = 0;
+
+    /************************************************************************************
+     * Construct a buffer pool with the given number of frames.
+     *
+     * @param n  the number of frames
+     */
+    BufferPool (int n)
+    {
+        if (n < 1) throw new IllegalArgumentException ("BufferPool: need at least one frame");
+        frames   = new Frame [n];
+        for (int i = 0; i < n; i++) frames [i] = new Frame ();
+        resident = new HashMap <> (2 * n);
+    } // constructor
+
+    /************************************************************************************
+     * Pin the given page of the given file, bringing it into the pool if needed.  The
+     * page must later be unpinned.
+     *
+     * @param file    the page file
+     * @param pageNo  the page number
+     * @return  the frame holding the page
+     */
+    synchronized Frame pin (PageFile file, int pageNo)
+    {
+        long  id = pageId (file, pageNo);
+        Frame f  = resident.get (id);
+        if (f != null) {
+            hits++;
+        } else {
+            misses++;
+            f = victim ();
+            if (f.file != null) {
+                if (f.dirty) f.buf.force ();
+                resident.remove (pageId (f.file, f.pageNo));
+                evictions++;
+            } // if
+            try {
+                f.buf = file.map (pageNo);
+            } catch (IOException ex) {
+                f.file = null;
+                f.buf  = null;
+                throw new UncheckedIOException (ex);
+            } // try
+            f.file   = file;
+            f.pageNo = pageNo;
+            f.dirty  = false;
+            resident.put (id, f);
+        } // if
+        f.pins++;
+        f.ref = true;
+        return f;
+    } // pin
+
+    /************************************************************************************
+     * Unpin a frame pinned by pin.
+     *
+     * @param f      the frame
+     * @param dirty  whether the caller changed the page
+     */
+    synchronized void unpin (Frame f, boolean dirty)
+    {
+        if (f.pins <= 0) throw new IllegalStateException ("BufferPool: page " + f.pageNo + " is not pinned");
+        f.pins--;
+        f.dirty |= dirty;
+    } // unpin
+
+    /************************************************************************************
+     * Force the dirty pages of the given file (or of all files if file is null) to disk.
+     *
+     * @param file  the page file, or null for all files
+     */
+    synchronized void flush (PageFile file)
+    {
+        for (Frame f : frames) {
+            if (f.file != null && f.dirty && (file == null || f.file == file)) {
+                f.buf.force ();
+                f.dirty = false;
+            } // if
+        } // for
+    } // flush
+
+    /************************************************************************************
+     * Record that the given file is accessed through this pool until it is dropped.
+     *
+     * @param file  the page file
+     */
+    synchronized void attach (PageFile file)
+    {
+        attached.add (file);
+    } // attach
+
+    /************************************************************************************
+     * Return whether any file is accessed through this pool (attached and not dropped).
+     *
+     * @return  whether the pool is in use
+     */
+    synchronized boolean inUse ()
+    {
+        return ! attached.isEmpty ();
+    } // inUse
+
+    /************************************************************************************
+     * Flush and drop the pages of the given file from the pool (e.g., before the file
+     * is closed or deleted).  None of them may be pinned.
+     *
+     * @param file  the page file
+     */
+    synchronized void drop (PageFile file)
+    {
+        attached.remove (file);
+        for (Frame f : frames) {
+            if (f.file != file) continue;
+            if (f.pins > 0) throw new IllegalStateException ("BufferPool: page " + f.pageNo + " is pinned");
+            if (f.dirty) f.buf.force ();
+            resident.remove (pageId (f.file, f.pageNo));
+            f.file  = null;
+            f.buf   = null;
+            f.dirty = false;
+            f.ref   = false;
+        } // for
+    } // drop
+
+    /************************************************************************************
+     * Return the number of frames in the pool.
+     *
+     * @return  the number of frames
+     */
+    int size ()
+    {
+        return frames.length;
+    } // size
+
+    /************************************************************************************
+     * Describe the pool and its hit/miss/eviction counts.
+     *
+     * @return  the description
+     */
+    public synchronized String toString ()
+    {
+        return "BufferPool (" + frames.length + " frames, " + hits + " hits, " + misses
+                              + " misses, " + evictions + " evictions)";
+    } // toString
+
+    /************************************************************************************
+     * Choose a frame to hold a new page using the CLOCK algorithm.  A free frame is
+     * taken at once; otherwise the hand clears the reference bits of the unpinned
+     * frames it passes and stops at the first unpinned frame whose bit is already
+     * clear.
+     *
+     * @return  the frame to reuse
+     */
+    private Frame victim ()
+    {
+        for (int step = 0; step < 2 * frames.length; step++) {
+            Frame f = frames [hand];
+            hand = (hand + 1) % frames.length;
+            if (f.file == null) return f;
+            if (f.pins > 0) continue;
+            if (f.ref) f.ref = false;
+            else       return f;
+        } // for
+        throw new IllegalStateException ("BufferPool: all " + frames.length + " frames are pinned");
+    } // victim
+
+    /************************************************************************************
+     * Combine a file's id and a page number into a page id.
+     *
+     * @param file    the page file
+     * @param pageNo  the page number
+     * @return  the page id
+     */
+    private static long pageId (PageFile file, int pageNo)
+    {
+        return ((long) file.id << 32) | (pageNo & 0xFFFFFFFFL);
+    } // pageId
+
+} // BufferPool class
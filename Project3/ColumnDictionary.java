@@ -0,0 +1,107 @@
+/****************************************************************************************
+ * @file  ColumnDictionary.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class dictionary-encodes a String column of a table: each distinct value gets an
+ * int code, and the column is kept as an array holding the code of every row.  The rows'
+ * values are replaced by the dictionary's own String instances, so a value repeated in
+ * many rows is stored once, and an equality (or IN) selection on the column becomes a
+ * scan of the code array that never compares Strings.
+ */
+class ColumnDictionary
+       implements Serializable
+{
+    /** The distinct values, indexed by code.
+     */
+    private final List <String> values = new ArrayList <> ();
+
+    /** Map from value to code.
+     */
+    private final Map <String, Integer> codes = new HashMap <> ();
+
+    /** The code of each row.
+     */
+    private int [] rows = new int [16];
+
+    /** The number of rows.
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Append a row with the given value, adding the value to the dictionary if it is
+     * new.
+     *
+     * @param v  the row's value
+     * @return  the dictionary's instance of the value (equal to v)
+     */
+    String add (String v)
+    {
+        Integer c = codes.get (v);
+        if (c == null) {
+            c = values.size ();
+            values.add (v);
+            codes.put (v, c);
+        } // if
+        if (n == rows.length) rows = Arrays.copyOf (rows, 2 * n);
+        rows [n++] = c;
+        return values.get (c);
+    } // add
+
+    /************************************************************************************
+     * Return the code of the given value, or -1 if it does not occur in the column.
+     *
+     * @param v  the value
+     * @return  the code
+     */
+    int code (Comparable v)
+    {
+        Integer c = (v instanceof String) ? codes.get (v) : null;
+        return (c == null) ? -1 : c;
+    } // code
+
+    /************************************************************************************
+     * Return the value with the given code.
+     *
+     * @param c  the code
+     * @return  the value
+     */
+    String value (int c)
+    {
+        return values.get (c);
+    } // value
+
+    /************************************************************************************
+     * Return the number of distinct values.
+     *
+     * @return  the size of the dictionary
+     */
+    int size ()
+    {
+        return values.size ();
+    } // size
+
+    /************************************************************************************
+     * Return the code array (only the first numRows entries are used).
+     *
+     * @return  the code of each row
+     */
+    int [] codes ()
+    {
+        return rows;
+    } // codes
+
+    /************************************************************************************
+     * Return the number of rows.
+     *
+     * @return  the number of rows
+     */
+    int numRows ()
+    {
+        return n;
+    } // numRows
+
+} // ColumnDictionary class
@@ -0,0 +1,136 @@
+/****************************************************************************************
+ * @file  ColumnKernels.java
+ */
+
+/****************************************************************************************
+ * This interface evaluates simple comparison predicates over batches of primitive
+ * column values, producing a selection bitmap (bit i of the bitmap is set when row i of
+ * the batch qualifies).  Real values are filtered as longs via orderedBits, so they
+ * compare as Double.compare does (NaN above every other value, -0.0 below 0.0).  The SIMD implementation (VectorKernels) uses the incubating
+ * Java Vector API and is picked up when it has been compiled and the
+ * jdk.incubator.vector module is available; otherwise the scalar implementation is used.
+ */
+interface ColumnKernels
+{
+    /** Comparison operators supported by the kernels (BETWEEN is inclusive).
+     */
+    enum Op { EQ, NE, LT, LE, GT, GE, BETWEEN }
+
+    /** The kernels to use, vectorized when possible.
+     */
+    ColumnKernels INSTANCE = load ();
+
+    /************************************************************************************
+     * Evaluate "col [i] op a" (or "a <= col [i] <= b" for BETWEEN) for i in 0 until n,
+     * overwriting the first (n + 63) / 64 words of bits.
+     *
+     * @param col   the column values
+     * @param n     the number of values in the batch
+     * @param op    the comparison operator
+     * @param a     the constant (lower bound for BETWEEN)
+     * @param b     the upper bound for BETWEEN (ignored otherwise)
+     * @param bits  the selection bitmap to fill
+     */
+    void filter (int [] col, int n, Op op, int a, int b, long [] bits);
+
+    /************************************************************************************
+     * Evaluate "col [i] op a" (or "a <= col [i] <= b" for BETWEEN) for i in 0 until n,
+     * overwriting the first (n + 63) / 64 words of bits.
+     *
+     * @param col   the column values
+     * @param n     the number of values in the batch
+     * @param op    the comparison operator
+     * @param a     the constant (lower bound for BETWEEN)
+     * @param b     the upper bound for BETWEEN (ignored otherwise)
+     * @param bits  the selection bitmap to fill
+     */
+    void filter (long [] col, int n, Op op, long a, long b, long [] bits);
+
+    /************************************************************************************
+     * Map the double to a long whose signed order is that of Double.compare (flip the
+     * magnitude bits of negative values, NaNs having been collapsed by doubleToLongBits).
+     *
+     * @param v  the value to map
+     * @return  the order-preserving long for v
+     */
+    static long orderedBits (double v)
+    {
+        long x = Double.doubleToLongBits (v);
+        return x ^ ((x >> 63) & Long.MAX_VALUE);
+    } // orderedBits
+
+    /************************************************************************************
+     * Return the name of the implementation (for plan descriptions).
+     *
+     * @return  the implementation name
+     */
+    String name ();
+
+    /************************************************************************************
+     * Load the vectorized kernels if they are available, otherwise the scalar ones.
+     *
+     * @return  the kernels to use
+     */
+    static ColumnKernels load ()
+    {
+        try {
+            ColumnKernels k = (ColumnKernels) Class.forName ("VectorKernels")
+                                                   .getDeclaredConstructor ().newInstance ();
+            k.filter (new int [1], 1, Op.EQ, 0, 0, new long [1]);     // force linkage
+            return k;
+        } catch (Throwable ex) {
+            return new Scalar ();
+        } // try
+    } // load
+
+    /************************************************************************************
+     * This class implements the kernels one value at a time.
+     */
+    class Scalar
+          implements ColumnKernels
+    {
+        public void filter (int [] col, int n, Op op, int a, int b, long [] bits)
+        {
+            java.util.Arrays.fill (bits, 0, (n + 63) >>> 6, 0L);
+            for (int i = 0; i < n; i++) {
+                int     v = col [i];
+                boolean q;
+                switch (op) {
+                case EQ: q = v == a;  break;
+                case NE: q = v != a;  break;
+                case LT: q = v < a;   break;
+                case LE: q = v <= a;  break;
+                case GT: q = v > a;   break;
+                case GE: q = v >= a;  break;
+                default: q = v >= a && v <= b;
+                } // switch
+                if (q) bits [i >>> 6] |= 1L << i;
+            } // for
+        } // filter
+
+        public void filter (long [] col, int n, Op op, long a, long b, long [] bits)
+        {
+            java.util.Arrays.fill (bits, 0, (n + 63) >>> 6, 0L);
+            for (int i = 0; i < n; i++) {
+                long    v = col [i];
+                boolean q;
+                switch (op) {
+                case EQ: q = v == a;  break;
+                case NE: q = v != a;  break;
+                case LT: q = v < a;   break;
+                case LE: q = v <= a;  break;
+                case GT: q = v > a;   break;
+                case GE: q = v >= a;  break;
+                default: q = v >= a && v <= b;
+                } // switch
+                if (q) bits [i >>> 6] |= 1L << i;
+            } // for
+        } // filter
+
+        public String name ()
+        {
+            return "Scalar";
+        } // name
+    } // Scalar class
+
+} // ColumnKernels interface
@@ -0,0 +1,462 @@
+/****************************************************************************************
+ * @file  ColumnarFile.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/****************************************************************************************
+ * This class reads and writes a table in a versioned, columnar binary format.  A header
+ * carries the table's meta-data; it is followed by one segment per column, holding that
+ * column's values for every row, encoded according to the column's domain (e.g., an
+ * Integer column is a run of 4 byte ints):
+ *
+ *     header:  magic (int), version (short), name,
+ *              number of attributes (short), then each attribute's name and type code,
+ *              number of key attributes (short), then each key attribute's name,
+ *              index map type (byte), whether the tuples are indexed (byte),
+ *              number of rows (long), checkpoint LSN (long), delta number (int)
+ *     column:  encoding (byte), length in bytes of the values (long), values
+ *
+ * A String column may instead be dictionary-encoded: its values are
+ *
+ *     number of distinct values (int), code width (byte), the distinct values,
+ *     then each row's code (1, 2 or 4 bytes, as the code width)
+ *
+ * A table is saved as a base file and delta files holding the rows appended since (see
+ * Table.save); the delta number of a base file is that of the last delta merged into
+ * it, and that of a delta file is its own.
+ *
+ * Names are written as a 2 byte length followed by their UTF-8 bytes, as are String
+ * values (with a 4 byte length).  Files are written through a FileChannel using a large
+ * buffer and read back in bulk by memory-mapping each column segment.
+ */
+class ColumnarFile
+{
+    /** The magic number starting every columnar file ("MDBC").
+     */
+    static final int MAGIC = 0x4D444243;
+
+    /** The current format version.
+     */
+    static final short VERSION = 1;
+
+    /** Column encodings: PLAIN stores each value in its domain's binary form.
+     */
+    static final byte PLAIN = 0;
+
+    /** DICT stores a String column as a dictionary of its distinct values and a code per
+     *  row.
+     */
+    static final byte DICT  = 1;
+
+    /** Size of the write buffer.
+     */
+    private static final int BUFFER = 1 << 20;
+
+    /** The table's name, attributes, domains and primary key.
+     */
+    final String     name;
+    final String []  attribute;
+    final Class []   domain;
+    final String []  key;
+
+    /** The type of map used for the table's index.
+     */
+    final Table.MapType mapType;
+
+    /** Whether every tuple was in the index (so the index is rebuilt on load).
+     */
+    final boolean indexed;
+
+    /** The tuples.
+     */
+    final List <Comparable []> tuples;
+
+    /** The LSN of the last write-ahead log record reflected in the tuples.
+     */
+    final long checkpoint;
+
+    /** For a base file, the number of the last delta merged into it; for a delta file,
+     *  its own number.
+     */
+    final int delta;
+
+    /** The encoding of each column (all PLAIN unless set before writing).
+     */
+    final byte [] encoding;
+
+    /************************************************************************************
+     * Construct a columnar file image of a table.
+     *
+     * @param _name        the name of the table
+     * @param _attribute   the attribute names
+     * @param _domain      the attribute domains
+     * @param _key         the primary key
+     * @param _mapType     the type of map used for the index
+     * @param _indexed     whether every tuple is in the index
+     * @param _tuples      the tuples
+     * @param _checkpoint  the LSN of the last log record reflected in the tuples
+     * @param _delta       the delta number
+     */
+    ColumnarFile (String _name, String [] _attribute, Class [] _domain, String [] _key,
+                  Table.MapType _mapType, boolean _indexed, List <Comparable []> _tuples,
+                  long _checkpoint, int _delta)
+    {
+        name       = _name;
+        attribute  = _attribute;
+        domain     = _domain;
+        key        = _key;
+        mapType    = _mapType;
+        indexed    = _indexed;
+        tuples     = _tuples;
+        checkpoint = _checkpoint;
+        delta      = _delta;
+        encoding   = new byte [attribute.length];
+    } // constructor
+
+    /************************************************************************************
+     * Write this image to the file with the given path, replacing any existing file.
+     * The image is written to a temporary file that is then renamed, so a crash while
+     * writing leaves the previous file intact.
+     *
+     * @param path  the path of the file
+     */
+    void write (String path)
+            throws IOException
+    {
+        Path tmp = Paths.get (path + ".tmp");
+        try (FileChannel ch = FileChannel.open (tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect (BUFFER);
+
+            buf.putInt (MAGIC).putShort (VERSION);
+            putName (ch, buf, name);
+            buf.putShort ((short) attribute.length);
+            for (int j = 0; j < attribute.length; j++) {
+                putName (ch, buf, attribute [j]);
+                buf.put (TupleCodec.typeOf (domain [j]));
+            } // for
+            buf.putShort ((short) key.length);
+            for (String k : key) putName (ch, buf, k);
+            buf.put ((byte) mapType.ordinal ()).put ((byte) (indexed ? 1 : 0));
+            buf.putLong (tuples.size ()).putLong (checkpoint).putInt (delta);
+
+            for (int j = 0; j < domain.length; j++) writeColumn (ch, buf, j);
+            drain (ch, buf);
+            ch.force (true);
+        } // try
+        Files.move (tmp, Paths.get (path), StandardCopyOption.REPLACE_EXISTING,
+                                           StandardCopyOption.ATOMIC_MOVE);
+    } // write
+
+    /************************************************************************************
+     * Read the columnar file with the given path.
+     *
+     * @param path  the path of the file
+     * @return  the image of the table stored in the file
+     */
+    static ColumnarFile read (String path)
+            throws IOException
+    {
+        return read (path, true);
+    } // read
+
+    /************************************************************************************
+     * Read the columnar file with the given path, or only its header (e.g., to find its
+     * checkpoint LSN), in which case the image has no tuples.
+     *
+     * @param path      the path of the file
+     * @param withRows  whether to read the column segments
+     * @return  the image of the table stored in the file
+     */
+    static ColumnarFile read (String path, boolean withRows)
+            throws IOException
+    {
+        try (FileChannel ch = FileChannel.open (Paths.get (path), READ)) {
+            ByteBuffer head = ByteBuffer.allocate ((int) Math.min (ch.size (), BUFFER));
+            while (head.hasRemaining () && ch.read (head) >= 0) ;
+            head.flip ();
+
+            if (head.remaining () < 6 || head.getInt () != MAGIC) {
+                throw new IOException (path + " is not a columnar table file");
+            } // if
+            short version = head.getShort ();
+            if (version != VERSION) throw new IOException (path + " has unsupported version " + version);
+
+            String     name      = getName (head);
+            String []  attribute = new String [head.getShort ()];
+            Class []   domain    = new Class [attribute.length];
+            byte []    type      = new byte [attribute.length];
+            for (int j = 0; j < attribute.length; j++) {
+                attribute [j] = getName (head);
+                type [j]      = head.get ();
+                domain [j]    = TupleCodec.domainOf (type [j]);
+            } // for
+            String [] key = new String [head.getShort ()];
+            for (int k = 0; k < key.length; k++) key [k] = getName (head);
+            Table.MapType mapType = Table.MapType.values () [head.get ()];
+            boolean       indexed = head.get () != 0;
+            long          n       = head.getLong ();
+            long          lsn     = head.getLong ();
+            int           delta   = head.getInt ();
+            if (n > Integer.MAX_VALUE) throw new IOException (path + " has too many rows");
+            if (! withRows) {
+                return new ColumnarFile (name, attribute, domain, key, mapType, indexed,
+                                         new ArrayList <> (), lsn, delta);
+            } // if
+
+            Comparable [][] rows     = new Comparable [(int) n][attribute.length];
+            byte []         encoding = new byte [attribute.length];
+            long pos = head.position ();
+            for (int j = 0; j < attribute.length; j++) {
+                ByteBuffer cb = ch.map (FileChannel.MapMode.READ_ONLY, pos, 9);
+                encoding [j]  = cb.get ();
+                long length   = cb.getLong ();
+                if (encoding [j] != PLAIN && (encoding [j] != DICT || type [j] != TupleCodec.STRING)) {
+                    throw new IOException (path + ": unknown encoding " + encoding [j]);
+                } // if
+                if (length > Integer.MAX_VALUE) throw new IOException (path + ": column too large");
+                ByteBuffer values = ch.map (FileChannel.MapMode.READ_ONLY, pos + 9, length);
+                if (encoding [j] == DICT) readDictColumn (values, rows, j);
+                else                      readColumn (values, type [j], rows, j);
+                pos += 9 + length;
+            } // for
+
+            ColumnarFile cf = new ColumnarFile (name, attribute, domain, key, mapType, indexed,
+                                                new ArrayList <> (Arrays.asList (rows)), lsn, delta);
+            System.arraycopy (encoding, 0, cf.encoding, 0, encoding.length);
+            return cf;
+        } // try
+    } // read
+
+    /************************************************************************************
+     * Write the j-th column: its encoding, its length in bytes and its values.
+     *
+     * @param ch   the channel to write to
+     * @param buf  the write buffer
+     * @param j    the column position
+     */
+    private void writeColumn (FileChannel ch, ByteBuffer buf, int j)
+            throws IOException
+    {
+        byte type = TupleCodec.typeOf (domain [j]);
+        int  n    = tuples.size ();
+        if (type == TupleCodec.STRING && encoding [j] == DICT) {
+            writeDictColumn (ch, buf, j);
+            return;
+        } // if
+
+        byte [][] utf    = null;
+        long      length = (long) n * width (type);
+        if (type == TupleCodec.STRING) {
+            utf    = new byte [n][];
+            length = 4L * n;
+            for (int i = 0; i < n; i++) {
+                utf [i] = ((String) tuples.get (i) [j]).getBytes (StandardCharsets.UTF_8);
+                length += utf [i].length;
+            } // for
+        } // if
+
+        ensure (ch, buf, 9);
+        buf.put (PLAIN).putLong (length);
+
+        for (int i = 0; i < n; i++) {
+            Comparable v = tuples.get (i) [j];
+            if (type == TupleCodec.STRING) {
+                ensure (ch, buf, 4);
+                buf.putInt (utf [i].length);
+                putBytes (ch, buf, utf [i]);
+                continue;
+            } // if
+            ensure (ch, buf, 8);
+            switch (type) {
+            case TupleCodec.INTEGER:   buf.putInt ((Integer) v);     break;
+            case TupleCodec.LONG:      buf.putLong ((Long) v);       break;
+            case TupleCodec.SHORT:     buf.putShort ((Short) v);     break;
+            case TupleCodec.BYTE:      buf.put ((Byte) v);           break;
+            case TupleCodec.DOUBLE:    buf.putDouble ((Double) v);   break;
+            case TupleCodec.FLOAT:     buf.putFloat ((Float) v);     break;
+            default:                   buf.putChar ((Character) v);
+            } // switch
+        } // for
+    } // writeColumn
+
+    /************************************************************************************
+     * Write the j-th column (a String column) dictionary-encoded: its distinct values in
+     * order of first occurrence, then each row's code in the narrowest width that holds
+     * the codes.
+     */
+    private void writeDictColumn (FileChannel ch, ByteBuffer buf, int j)
+            throws IOException
+    {
+        int                    n      = tuples.size ();
+        Map <String, Integer>  codes  = new HashMap <> ();
+        List <byte []>         values = new ArrayList <> ();
+        int []                 code   = new int [n];
+        long                   length = 5;
+        for (int i = 0; i < n; i++) {
+            String  v = (String) tuples.get (i) [j];
+            Integer c = codes.get (v);
+            if (c == null) {
+                c = values.size ();
+                codes.put (v, c);
+                byte [] b = v.getBytes (StandardCharsets.UTF_8);
+                values.add (b);
+                length += 4 + b.length;
+            } // if
+            code [i] = c;
+        } // for
+        int w   = (values.size () <= 1 << 8) ? 1 : (values.size () <= 1 << 16) ? 2 : 4;
+        length += (long) n * w;
+
+        ensure (ch, buf, 14);
+        buf.put (DICT).putLong (length).putInt (values.size ()).put ((byte) w);
+        for (byte [] b : values) {
+            ensure (ch, buf, 4);
+            buf.putInt (b.length);
+            putBytes (ch, buf, b);
+        } // for
+        for (int i = 0; i < n; i++) {
+            ensure (ch, buf, 4);
+            switch (w) {
+            case 1:  buf.put ((byte) code [i]);       break;
+            case 2:  buf.putShort ((short) code [i]); break;
+            default: buf.putInt (code [i]);
+            } // switch
+        } // for
+    } // writeDictColumn
+
+    /************************************************************************************
+     * Read the values of column j for every row from the column's segment.
+     *
+     * @param cb    the column's values
+     * @param type  the column's type code
+     * @param rows  the rows to fill in
+     * @param j     the column position
+     */
+    private static void readColumn (ByteBuffer cb, byte type, Comparable [][] rows, int j)
+    {
+        byte [] scratch = new byte [64];
+        for (Comparable [] t : rows) {
+            switch (type) {
+            case TupleCodec.INTEGER:   t [j] = cb.getInt ();     break;
+            case TupleCodec.LONG:      t [j] = cb.getLong ();    break;
+            case TupleCodec.SHORT:     t [j] = cb.getShort ();   break;
+            case TupleCodec.BYTE:      t [j] = cb.get ();        break;
+            case TupleCodec.DOUBLE:    t [j] = cb.getDouble ();  break;
+            case TupleCodec.FLOAT:     t [j] = cb.getFloat ();   break;
+            case TupleCodec.CHARACTER: t [j] = cb.getChar ();    break;
+            default:
+                int len = cb.getInt ();
+                if (len > scratch.length) scratch = new byte [Math.max (len, 2 * scratch.length)];
+                cb.get (scratch, 0, len);
+                t [j] = new String (scratch, 0, len, StandardCharsets.UTF_8);
+            } // switch
+        } // for
+    } // readColumn
+
+    /************************************************************************************
+     * Read the values of dictionary-encoded column j for every row.  Each distinct value
+     * is decoded once and shared by the rows holding it.
+     *
+     * @param cb    the column's dictionary and codes
+     * @param rows  the rows to fill in
+     * @param j     the column position
+     */
+    private static void readDictColumn (ByteBuffer cb, Comparable [][] rows, int j)
+    {
+        String [] values = new String [cb.getInt ()];
+        int       w      = cb.get ();
+        for (int c = 0; c < values.length; c++) {
+            byte [] b = new byte [cb.getInt ()];
+            cb.get (b);
+            values [c] = new String (b, StandardCharsets.UTF_8);
+        } // for
+        for (Comparable [] t : rows) {
+            switch (w) {
+            case 1:  t [j] = values [cb.get () & 0xFF];        break;
+            case 2:  t [j] = values [cb.getShort () & 0xFFFF]; break;
+            default: t [j] = values [cb.getInt ()];
+            } // switch
+        } // for
+    } // readDictColumn
+
+    /************************************************************************************
+     * Return the width in bytes of a value of the given fixed-width type.
+     *
+     * @param type  the type code
+     * @return  the width in bytes
+     */
+    private static int width (byte type)
+    {
+        switch (type) {
+        case TupleCodec.LONG: case TupleCodec.DOUBLE:    return 8;
+        case TupleCodec.INTEGER: case TupleCodec.FLOAT:  return 4;
+        case TupleCodec.SHORT: case TupleCodec.CHARACTER: return 2;
+        default:                                         return 1;
+        } // switch
+    } // width
+
+    /************************************************************************************
+     * Put a name (2 byte length and UTF-8 bytes) into the buffer.
+     */
+    private static void putName (FileChannel ch, ByteBuffer buf, String s)
+            throws IOException
+    {
+        byte [] b = s.getBytes (StandardCharsets.UTF_8);
+        ensure (ch, buf, 2);
+        buf.putShort ((short) b.length);
+        putBytes (ch, buf, b);
+    } // putName
+
+    /************************************************************************************
+     * Get a name (2 byte length and UTF-8 bytes) from the buffer.
+     */
+    private static String getName (ByteBuffer buf)
+    {
+        byte [] b = new byte [buf.getShort ()];
+        buf.get (b);
+        return new String (b, StandardCharsets.UTF_8);
+    } // getName
+
+    /************************************************************************************
+     * Put bytes into the buffer, writing the buffer out as it fills.
+     */
+    private static void putBytes (FileChannel ch, ByteBuffer buf, byte [] b)
+            throws IOException
+    {
+        for (int off = 0; off < b.length; ) {
+            if (! buf.hasRemaining ()) drain (ch, buf);
+            int len = Math.min (buf.remaining (), b.length - off);
+            buf.put (b, off, len);
+            off += len;
+        } // for
+    } // putBytes
+
+    /************************************************************************************
+     * Make room for at least n bytes in the buffer, writing it out if needed.
+     */
+    private static void ensure (FileChannel ch, ByteBuffer buf, int n)
+            throws IOException
+    {
+        if (buf.remaining () < n) drain (ch, buf);
+    } // ensure
+
+    /************************************************************************************
+     * Write the buffer's contents to the channel and clear it.
+     */
+    private static void drain (FileChannel ch, ByteBuffer buf)
+            throws IOException
+    {
+        buf.flip ();
+        while (buf.hasRemaining ()) ch.write (buf);
+        buf.clear ();
+    } // drain
+
+} // ColumnarFile class
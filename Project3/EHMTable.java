@@ -302,75 +302,25 @@ public class EHMTable
         String [] t_attrs = attributes1.split (" ");
         String [] u_attrs = attributes2.split (" ");
 
-        //lists of attributes' column indexes for each table
-        int [] t_attrs_index = new int[t_attrs.length];
-        int [] u_attrs_index = new int[u_attrs.length];
-
-        boolean type_check = true;
-
         //checks for uneven attribute numbers to compare
-        if(t_attrs.length != u_attrs.length){
+        if (t_attrs.length != u_attrs.length) {
+            out.println ("join ERROR: attribute lists have different lengths");
             return null;
-        }
-
-        //generate list of column indexes from attribute parameters to compare for table1
-        for(int i = 0; i < this.attribute.length; i++){
-            for(int j = 0; j < t_attrs.length; j++){
-                if(this.attribute[i].equals(t_attrs[j])){
-                    t_attrs_index[j] = i;
-                    break;
-                }
-            }
-        }
-        //generate list of column indexes from attribute parameters to compare for EHMTable2
-        for(int i = 0; i < EHMTable2.attribute.length; i++){
-            for(int j = 0; j < u_attrs.length; j++){
-                if(EHMTable2.attribute[i].equals(u_attrs[j])){
-                    u_attrs_index[j] = i;
-                    break;
-                }
-            }
-        }
-        //ensures column domains for the keys to compare match eachother
-        for(int i=0; i < t_attrs_index.length; i++){
-            if(this.domain[i] != EHMTable2.domain[i]) {
-                type_check = false;
-                break;
-            }
-        }
+        } // if
 
-        if(!type_check){
-            return null;
-        }
+        //lists of attributes' column indexes for each table
+        int [] t_cols = match (t_attrs);
+        int [] u_cols = EHMTable2.match (u_attrs);
 
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable[]>();
-        Comparable [] tuple;
+        //ensures column domains for the keys to compare match eachother
+        for (int i = 0; i < t_cols.length; i++) {
+            if (domain [t_cols [i]] != EHMTable2.domain [u_cols [i]]) {
+                out.println ("join ERROR: " + t_attrs [i] + " and " + u_attrs [i] + " disagree on domain");
+                return null;
+            } // if
+        } // for
 
-        //loop through both sets of rows for tables 
-        for(int i = 0; i < this.tuples.size(); i++){
-            for(int j = 0; j < EHMTable2.tuples.size(); j++){
-
-                boolean attrs_equal = false;
-                //loop through all relevant attribute fields using the generated index list for each table and compare their values 
-                for (int k = 0; k < t_attrs_index.length; k++){
-
-                    if(this.tuples.get(i)[t_attrs_index[k]].equals(EHMTable2.tuples.get(j)[u_attrs_index[k]])){
-                        
-                        attrs_equal = true;
-                    }
-                    else{
-                        attrs_equal = false;
-                        break;
-                    }
-                }
-                //concatenates and adds the tuples to our new row list if their key values are equal
-                if(attrs_equal){
-                    tuple = ArrayUtil.concat(this.tuples.get(i), EHMTable2.tuples.get(j));
-                    rows.add(tuple);
-                }
-            }
-        }
+        List <Comparable []> rows = Table.hashJoin (tuples, t_cols, EHMTable2.tuples, u_cols, null);
 
         //create new key from two existing keys
         String [] key = ArrayUtil.concat(this.key, EHMTable2.key);
@@ -0,0 +1,420 @@
+/****************************************************************************************
+ * @file  Expr.java
+ */
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.function.*;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/****************************************************************************************
+ * This class provides a small expression language for selection conditions.  Unlike an
+ * opaque Predicate, an expression can be inspected by Table (e.g., to use an index for
+ * an equality on the key) and compiled into a tree of method handles with the column
+ * positions bound once, rather than looked up for every tuple.
+ *
+ * #usage movie.select (Expr.col ("year").eq (1977).and (Expr.col ("length").gt (100)))
+ */
+public abstract class Expr
+{
+    /** Method handles for the helpers at the bottom of this class.
+     */
+    private static final MethodHandle TEST      = find ("test", Comparable.class, ColumnKernels.Op.class,
+                                                        Comparable.class, Comparable.class);
+    private static final MethodHandle TEST_INT  = find ("testInt", Comparable.class, ColumnKernels.Op.class,
+                                                        int.class, int.class);
+    private static final MethodHandle TEST_LONG = find ("testLong", Comparable.class, ColumnKernels.Op.class,
+                                                        long.class, long.class);
+    private static final MethodHandle TEST_NUM  = find ("testNum", Comparable.class, ColumnKernels.Op.class,
+                                                        double.class, double.class);
+    private static final MethodHandle NOT       = find ("not", boolean.class);
+
+    /************************************************************************************
+     * Refer to the column with the given attribute name.
+     *
+     * @param attr  the attribute name
+     * @return  the column reference, on which comparisons can be made
+     */
+    public static Col col (String attr)
+    {
+        return new Col (attr);
+    } // col
+
+    /************************************************************************************
+     * Form the conjunction of this expression and e.
+     *
+     * @param e  the other expression
+     * @return  the expression "this AND e"
+     */
+    public Expr and (Expr e)
+    {
+        return new And (this, e);
+    } // and
+
+    /************************************************************************************
+     * Form the disjunction of this expression and e.
+     *
+     * @param e  the other expression
+     * @return  the expression "this OR e"
+     */
+    public Expr or (Expr e)
+    {
+        return new Or (this, e);
+    } // or
+
+    /************************************************************************************
+     * Form the negation of this expression.
+     *
+     * @return  the expression "NOT this"
+     */
+    public Expr not ()
+    {
+        return new Not (this);
+    } // not
+
+    /************************************************************************************
+     * Compile this expression into a predicate over the tuples of the given table.
+     *
+     * @param table  the table whose tuples will be tested
+     * @return  the compiled predicate
+     */
+    public Predicate <Comparable []> compile (Table table)
+    {
+        return compile (table::col, table.getDomain ());
+    } // compile
+
+    /************************************************************************************
+     * Compile this expression into a predicate over tuples whose column positions are
+     * given by colOf (e.g., the output of a Query operator).
+     *
+     * @param colOf   the function from attribute name to column position (-1 if none)
+     * @param domain  the domains of the columns
+     * @return  the compiled predicate
+     */
+    Predicate <Comparable []> compile (ToIntFunction <String> colOf, Class [] domain)
+    {
+        MethodHandle mh = handle (colOf, domain);
+        return t -> {
+            try {
+                return (boolean) mh.invokeExact (t);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException (ex);
+            } // try
+        };
+    } // compile
+
+    /************************************************************************************
+     * Build the method handle of type (Comparable []) boolean evaluating this
+     * expression on tuples whose column positions are given by colOf.
+     *
+     * @param colOf   the function from attribute name to column position
+     * @param domain  the domains of the columns
+     * @return  the method handle
+     */
+    abstract MethodHandle handle (ToIntFunction <String> colOf, Class [] domain);
+
+    /************************************************************************************
+     * Add the conjuncts of this expression (itself unless it is an AND) to the list.
+     *
+     * @param list  the list of conjuncts
+     */
+    void conjuncts (List <Expr> list)
+    {
+        list.add (this);
+    } // conjuncts
+
+    /************************************************************************************
+     * If this expression is "attr = v", or a disjunction of such equalities on a single
+     * attribute (e.g., made by Col.in), add the values to the list and return the
+     * attribute; otherwise return null.
+     *
+     * @param vals  the list of values
+     * @return  the attribute, or null
+     */
+    String equalities (List <Comparable> vals)
+    {
+        return null;
+    } // equalities
+
+    //----------------------------------------------------------------------------------
+    // Expression node types
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * This class is a reference to a column, on which comparisons can be made.
+     */
+    public static final class Col
+    {
+        final String attr;
+
+        Col (String _attr) { attr = _attr; }
+
+        public Expr eq (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.EQ, v, v); }
+        public Expr ne (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.NE, v, v); }
+        public Expr lt (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.LT, v, v); }
+        public Expr le (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.LE, v, v); }
+        public Expr gt (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.GT, v, v); }
+        public Expr ge (Comparable v)                       { return new Cmp (attr, ColumnKernels.Op.GE, v, v); }
+        public Expr between (Comparable lo, Comparable hi)  { return new Cmp (attr, ColumnKernels.Op.BETWEEN, lo, hi); }
+        public Expr in (Comparable ... vs)
+        {
+            Expr e = eq (vs [0]);
+            for (int i = 1; i < vs.length; i++) e = e.or (eq (vs [i]));
+            return e;
+        } // in
+    } // Col class
+
+    /************************************************************************************
+     * This class compares a column with a constant ("attr op lo", or "lo <= attr <= hi"
+     * for BETWEEN).
+     */
+    static final class Cmp
+           extends Expr
+    {
+        final String           attr;
+        final ColumnKernels.Op op;
+        final Comparable       lo;
+        final Comparable       hi;
+
+        Cmp (String _attr, ColumnKernels.Op _op, Comparable _lo, Comparable _hi)
+        {
+            attr = _attr;
+            op   = _op;
+            lo   = _lo;
+            hi   = _hi;
+        } // constructor
+
+        MethodHandle handle (ToIntFunction <String> colOf, Class [] domain)
+        {
+            int pos = colOf.applyAsInt (attr);
+            if (pos < 0) throw new IllegalArgumentException ("Expr: unknown attribute " + attr);
+
+            MethodHandle get = MethodHandles.insertArguments (
+                    MethodHandles.arrayElementGetter (Comparable [].class), 1, pos);
+
+            Class        dom = domain [pos];
+            MethodHandle test;
+            if (dom == Integer.class && lo instanceof Integer && hi instanceof Integer) {
+                test = MethodHandles.insertArguments (TEST_INT, 1, op, lo, hi);       // unboxed int compare
+            } else if (integral (dom) && integral (lo.getClass ()) && integral (hi.getClass ())
+                       && (lo.getClass () != dom || hi.getClass () != dom)) {      // mixed integral types
+                test = MethodHandles.insertArguments (TEST_LONG, 1, op, ((Number) lo).longValue (),
+                                                                        ((Number) hi).longValue ());
+            } else if (Number.class.isAssignableFrom (dom) && lo instanceof Number && hi instanceof Number
+                       && (lo.getClass () != dom || hi.getClass () != dom)) {      // floating on one side
+                test = MethodHandles.insertArguments (TEST_NUM, 1, op, ((Number) lo).doubleValue (),
+                                                                       ((Number) hi).doubleValue ());
+            } else {
+                test = MethodHandles.insertArguments (TEST, 1, op, lo, hi);
+            } // if
+            return MethodHandles.filterArguments (test, 0, get);
+        } // handle
+
+        String equalities (List <Comparable> vals)
+        {
+            if (op != ColumnKernels.Op.EQ) return null;
+            vals.add (lo);
+            return attr;
+        } // equalities
+
+        public String toString ()
+        {
+            return (op == ColumnKernels.Op.BETWEEN) ? attr + " BETWEEN " + lo + " AND " + hi
+                                                    : attr + " " + op + " " + lo;
+        } // toString
+    } // Cmp class
+
+    /************************************************************************************
+     * This class is the conjunction of two expressions.
+     */
+    static final class And
+           extends Expr
+    {
+        final Expr left, right;
+
+        And (Expr _left, Expr _right) { left = _left; right = _right; }
+
+        MethodHandle handle (ToIntFunction <String> colOf, Class [] domain)
+        {
+            return MethodHandles.guardWithTest (left.handle (colOf, domain), right.handle (colOf, domain),
+                                                constant (false));
+        } // handle
+
+        void conjuncts (List <Expr> list)
+        {
+            left.conjuncts (list);
+            right.conjuncts (list);
+        } // conjuncts
+
+        public String toString () { return "(" + left + " AND " + right + ")"; }
+    } // And class
+
+    /************************************************************************************
+     * This class is the disjunction of two expressions.
+     */
+    static final class Or
+           extends Expr
+    {
+        final Expr left, right;
+
+        Or (Expr _left, Expr _right) { left = _left; right = _right; }
+
+        MethodHandle handle (ToIntFunction <String> colOf, Class [] domain)
+        {
+            return MethodHandles.guardWithTest (left.handle (colOf, domain), constant (true),
+                                                right.handle (colOf, domain));
+        } // handle
+
+        String equalities (List <Comparable> vals)
+        {
+            String l = left.equalities (vals);
+            String r = right.equalities (vals);
+            return (l != null && l.equals (r)) ? l : null;
+        } // equalities
+
+        public String toString () { return "(" + left + " OR " + right + ")"; }
+    } // Or class
+
+    /************************************************************************************
+     * This class is the negation of an expression.
+     */
+    static final class Not
+           extends Expr
+    {
+        final Expr e;
+
+        Not (Expr _e) { e = _e; }
+
+        MethodHandle handle (ToIntFunction <String> colOf, Class [] domain)
+        {
+            return MethodHandles.filterReturnValue (e.handle (colOf, domain), NOT);
+        } // handle
+
+        public String toString () { return "NOT " + e; }
+    } // Not class
+
+    //----------------------------------------------------------------------------------
+    // Helpers targeted by the method handles
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Compare a value with the constant(s) using the given operator.
+     */
+    @SuppressWarnings("unchecked")
+    static boolean test (Comparable v, ColumnKernels.Op op, Comparable lo, Comparable hi)
+    {
+        int cmp = v.compareTo (lo);
+        switch (op) {
+        case EQ: return cmp == 0;
+        case NE: return cmp != 0;
+        case LT: return cmp < 0;
+        case LE: return cmp <= 0;
+        case GT: return cmp > 0;
+        case GE: return cmp >= 0;
+        default: return cmp >= 0 && v.compareTo (hi) <= 0;
+        } // switch
+    } // test
+
+    /************************************************************************************
+     * Compare a value from an Integer column with int constant(s) using the given
+     * operator.
+     */
+    static boolean testInt (Comparable v, ColumnKernels.Op op, int lo, int hi)
+    {
+        int x = (Integer) v;
+        switch (op) {
+        case EQ: return x == lo;
+        case NE: return x != lo;
+        case LT: return x < lo;
+        case LE: return x <= lo;
+        case GT: return x > lo;
+        case GE: return x >= lo;
+        default: return x >= lo && x <= hi;
+        } // switch
+    } // testInt
+
+    /************************************************************************************
+     * Compare a value from an integral column with integral constant(s) of another
+     * type, as longs, using the given operator.
+     */
+    static boolean testLong (Comparable v, ColumnKernels.Op op, long lo, long hi)
+    {
+        long x = ((Number) v).longValue ();
+        switch (op) {
+        case EQ: return x == lo;
+        case NE: return x != lo;
+        case LT: return x < lo;
+        case LE: return x <= lo;
+        case GT: return x > lo;
+        case GE: return x >= lo;
+        default: return x >= lo && x <= hi;
+        } // switch
+    } // testLong
+
+    /************************************************************************************
+     * Compare a value from a numeric column with constant(s) of another numeric type,
+     * at least one of them floating point, as doubles, using the given operator.
+     */
+    static boolean testNum (Comparable v, ColumnKernels.Op op, double lo, double hi)
+    {
+        int cmp = Double.compare (((Number) v).doubleValue (), lo);
+        switch (op) {
+        case EQ: return cmp == 0;
+        case NE: return cmp != 0;
+        case LT: return cmp < 0;
+        case LE: return cmp <= 0;
+        case GT: return cmp > 0;
+        case GE: return cmp >= 0;
+        default: return cmp >= 0 && Double.compare (((Number) v).doubleValue (), hi) <= 0;
+        } // switch
+    } // testNum
+
+    /************************************************************************************
+     * Return whether the class is an integral numeric type.
+     */
+    private static boolean integral (Class c)
+    {
+        return c == Long.class || c == Integer.class || c == Short.class || c == Byte.class;
+    } // integral
+
+    /************************************************************************************
+     * Negate a boolean.
+     */
+    static boolean not (boolean b)
+    {
+        return ! b;
+    } // not
+
+    /************************************************************************************
+     * Find the static helper method with the given name and parameter types.
+     *
+     * @param name    the method name
+     * @param params  the parameter types
+     * @return  a method handle for the helper
+     */
+    private static MethodHandle find (String name, Class <?> ... params)
+    {
+        try {
+            return MethodHandles.lookup ().findStatic (Expr.class, name,
+                                                       methodType (boolean.class, params));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException (ex);
+        } // try
+    } // find
+
+    /************************************************************************************
+     * Return a method handle of type (Comparable []) boolean that always returns b.
+     *
+     * @param b  the constant result
+     * @return  the method handle
+     */
+    private static MethodHandle constant (boolean b)
+    {
+        return MethodHandles.dropArguments (MethodHandles.constant (boolean.class, b), 0,
+                                            Comparable [].class);
+    } // constant
+
+} // Expr class
@@ -19,8 +19,14 @@ public class ExtHashMap <K, V>
      */
     private final Class <V> classV;
 
+    /** The global depth (the directory has 2^gd entries).
+     */
     private int gd = 0;
 
+    /** The largest global depth; a full bucket at this depth grows instead of splitting.
+     */
+    private static final int MAX_DEPTH = 24;
+
     /********************************************************************************
      * This inner class defines buckets that are stored in the hash table.
      */
@@ -29,8 +35,8 @@ public class ExtHashMap <K, V>
         int  nKeys;
         K [] key;
         V [] value;
-        int ld;
-        int bNum;
+        int ld;                  // local depth
+        int bNum;                // the directory slots j with j % 2^ld == bNum refer to this bucket
         @SuppressWarnings("unchecked")
         Bucket ()
         {
@@ -74,11 +80,11 @@ public class ExtHashMap <K, V>
         hTable = new ArrayList<> ();   // for bucket storage
         dir    = new ArrayList<> ();   // for bucket access
         mod    = nBuckets = initSize;
-        gd     = 1;
+        gd     = Integer.numberOfTrailingZeros (initSize);
         for(int i = 0; i < initSize; i++){
 
             hTable.add(new Bucket());
-            hTable.get(i).ld = initSize/2;
+            hTable.get(i).ld = gd;
             hTable.get(i).bNum = i;
             dir.add(hTable.get(i));
 
@@ -95,7 +101,7 @@ public class ExtHashMap <K, V>
         Bucket b = null;
 
         //loop through buckets and get all keys and values
-        for(int i = 0; i < this.nBuckets; i++) {
+        for(int i = 0; i < hTable.size(); i++) {
             b = hTable.get(i);
             this.count++;
             for(int j = 0; j < b.nKeys; j++){
@@ -118,108 +124,92 @@ public class ExtHashMap <K, V>
         Bucket b = dir.get (i);
 
         //loop through bucket the key hashes to and find the value in it's list of members
-        for(int j =0; j < b.key.length; j++){
-            if(b.key[j] != null && key != null && b.key[j].equals(key)){
+        for(int j =0; j < b.nKeys; j++){
+            if(key != null && b.key[j].equals(key)){
                 return b.value[j];
             }
         }
         return null;
     } // get
     /********************************************************************************
-     * Given the bucket, split and redistribute members
+     * Given the full bucket, split it: a new bucket takes the directory slots (and
+     * keys) whose next hash bit is 1.  The directory is doubled first if the bucket's
+     * local depth equals the global depth; otherwise only the slots referring to the
+     * bucket are repointed.
      * @param b  the bucket to split
      */
-    public void splitBucket(Bucket b) {
+    private void splitBucket(Bucket b) {
 
         //if the local depth equals the global depth, double the directory
-        if (b.ld > this.gd) {
-            this.gd++;
-            //duplicate directory and then set all members to correct hashed bucket
-            List<Bucket> dir2 = dir;
-            dir.addAll(dir2);
-            for (int j = 0; j < dir.size(); j++) {
-                for (int k = 0; k < hTable.size(); k++) {
-                    Bucket c = hTable.get(k);
-                    this.count++;
-                    if(j%(Math.pow(2,c.ld)) == c.bNum) {
-                        dir.set(j, c);
-                    }
-                }
-            }
+        if (b.ld == this.gd) {
+            for (int j = 0; j < mod; j++) dir.add(dir.get(j));
             mod *= 2;
-
+            this.gd++;
         }
-        //if the local depth is less than the global depth, reassign directory members to accommodate for added bucket
-        else{
-            for(int j = 0; j < dir.size(); j++) {
-                for(int k = 0; k < hTable.size(); k++){
-                    Bucket tempB = hTable.get(k);
-                    this.count++;
-                    if(j%(Math.pow(2,tempB.ld)) == tempB.bNum ){
-                        dir.set(j, tempB);
-                    }
-                }
 
-            }
-        }
-        //in the bucket to split, rehash the keys and put them in the new directory if needed
+        Bucket c = new Bucket();
+        c.bNum = b.bNum + (1 << b.ld);
+        b.ld++;
+        c.ld = b.ld;
+        hTable.add(c);
+        nBuckets++;
+        this.count++;
+
+        //point every other slot that referred to b at the new bucket
+        for (int j = c.bNum; j < mod; j += 1 << c.ld) dir.set(j, c);
+
+        //move the keys that now hash to the new bucket, condensing the rest
+        int n = 0;
         for(int k = 0; k < b.nKeys; k++){
-            int m = h(b.key[k]);
-            Bucket c = dir.get(m);
-            if(b != c){
-                this.put(b.key[k],b.value[k]);
-                b.key[k]=null;
-                b.value[k]=null;
+            if (dir.get(h(b.key[k])) == c) {
+                c.key[c.nKeys] = b.key[k];
+                c.value[c.nKeys++] = b.value[k];
+            } else {
+                b.key[n] = b.key[k];
+                b.value[n++] = b.value[k];
             }
         }
-        int count = 0;
-        //condense bucket to remove null entries moved to added bucket
-        for(int k = 0; k < b.nKeys; k++){
-            if(b.key[k] != null){
-                b.key[count] = b.key[k];
-                b.value[count] = b.value[k];
-                count++;
-            }
+        for (int k = n; k < b.nKeys; k++) {
+            b.key[k] = null;
+            b.value[k] = null;
         }
-        b.nKeys = count;
-
+        b.nKeys = n;
     }
+
     /********************************************************************************
-     * Put the key-value pair in the hash table.
+     * Put the key-value pair in the hash table.  If the key is already present, its
+     * value is replaced.
      * @param key    the key to insert
      * @param value  the value to insert
      * @return  null (not the previous value)
      */
     public V put (K key, V value) {
-        int    i = h (key);
-        Bucket b = dir.get(i);
-
-        //inserts key/value pair into the bucket if there is room
-        if(b.nKeys < SLOTS) {
-            //out.println("Inserting key: " + key.toString() + " (hashed:" + i + ") value:" + value.toString() + " into bucket " + b.bNum);
-            b.key[b.nKeys] = key;
-            b.value[b.nKeys] = value;
-            b.nKeys++;
-        }
-        //else adds a bucket and splits the full bucket, then tries to add the key/value pair again
-        else{
-            hTable.add(new Bucket());
-
-            Double d = Math.pow(2,b.ld);
-
-            Bucket c = hTable.get(hTable.size()-1);
+        for ( ; ; ) {
+            Bucket b = dir.get(h(key));
             this.count++;
 
-            c.bNum = b.bNum+d.intValue();
-            b.ld++;
-            c.ld = b.ld;
-            splitBucket(b);
+            for (int j = 0; j < b.nKeys; j++) {
+                if (b.key[j].equals(key)) {
+                    b.value[j] = value;
+                    return null;
+                }
+            }
 
-            this.put(key, value);
+            //inserts key/value pair into the bucket if there is room
+            if (b.nKeys == b.key.length && b.ld >= MAX_DEPTH) {       // too many equal hashes
+                b.key   = Arrays.copyOf(b.key, 2 * b.nKeys);
+                b.value = Arrays.copyOf(b.value, 2 * b.nKeys);
+            }
+            if (b.nKeys < b.key.length) {
+                b.key[b.nKeys] = key;
+                b.value[b.nKeys] = value;
+                b.nKeys++;
+                return null;
+            }
 
+            //else split the full bucket, then try to add the key/value pair again
+            splitBucket(b);
         }
-
-        return null;
     } // put
 
     /********************************************************************************
@@ -260,7 +250,7 @@ public class ExtHashMap <K, V>
      */
     private int h (Object key)
     {
-        return key.hashCode () % mod;
+        return Math.floorMod (key.hashCode (), mod);
     } // h
 
     /********************************************************************************
@@ -66,6 +66,21 @@ public class KeyType
         return compareTo (k) == 0;
     } // equals
 
+    /*************************************************************************************
+     * Determine whether this key equals the given object.  Overriding Object.equals
+     * lets keys be used in hash-based maps and sets (e.g., HashMap, ExtHashMap).
+     * @param obj  the other object (to compare with this)
+     * @return  true if obj is a key with equal attribute values, false otherwise
+     */
+    @Override
+    public boolean equals (Object obj)
+    {
+        if (this == obj) return true;
+        if (! (obj instanceof KeyType)) return false;
+        KeyType k = (KeyType) obj;
+        return key.length == k.key.length && compareTo (k) == 0;
+    } // equals
+
     /*************************************************************************************
      * Compute a hash code for this object (equal objects should produce the same hash code).
      * @return  an integer hash code value
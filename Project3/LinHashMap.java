@@ -127,33 +127,27 @@ public class LinHashMap <K, V>
             hTable.add(new Bucket(null));
 	} // constructor
     
+    /********************************************************************************
+     * Split the bucket chain at position split: its entries are rehashed with the
+     * high resolution hash function into either the same position or the newly
+     * added bucket (split + mod1).
+     */
     public void splitBucket() {
-        System.out.println("splitBucket(" + split + ")");
+        Bucket old = hTable.get(split);
+        hTable.set(split, new Bucket(null));
         hTable.add(new Bucket(null));
-        
-        Bucket b = hTable.get(split);
-        while (b != null) {
+
+        for (Bucket b = old; b != null; b = b.next) {
             for (int i = 0; i < b.nKeys; i++) {
-                if (h2(b.key[i]) != split) {
-                    K key = b.key[i];
-                    V value = b.value[i];
-                    int newBucket = h2(key);
-                    
-                    b.remove(key,value);
-                    System.out.println("key = " + key);
-                    System.out.println("newBucket = " + newBucket);
-                    hTable.get(newBucket).insert(key,value);
-                }//end if
+                items--;
+                hTable.get(h2(b.key[i])).insert(b.key[i], b.value[i]);
             }
-            b = b.next;
         }
-        
+
         if (++split == mod1) {
             split = 0;
             mod1 = mod2;
             mod2 *= 2;
-            System.out.println("mod1 = " + mod1);
-            System.out.println("mod2 = " + mod2);
         }
     }
 
@@ -201,7 +195,7 @@ public class LinHashMap <K, V>
         
         while (b != null) {
             for (i = 0; i < b.nKeys; i++) {
-                if (b.key[i] == key)
+                if (b.key[i].equals(key))
                     return b.value[i];
             }
             b = b.next;
@@ -219,7 +213,6 @@ public class LinHashMap <K, V>
      */
     public V put (K key, V value)
     {
-        out.println("put(" + key + "," + value + ")");
         int i = h (key);
 
         //  T O   B E   I M P L E M E N T E D
@@ -233,7 +226,6 @@ public class LinHashMap <K, V>
             b = new Bucket(null);
         }
         b.insert(key,value);
-        System.out.println("Put(" + key + ") into bucket " + i);
 
         if ((double)((double)items / (double)size()) > 0.75) {
             this.splitBucket();
@@ -288,7 +280,7 @@ public class LinHashMap <K, V>
      */
     private int h (Object key)
     {
-        return key.hashCode () % mod1;
+        return Math.floorMod (key.hashCode (), mod1);
     } // h
 
     /********************************************************************************
@@ -298,7 +290,7 @@ public class LinHashMap <K, V>
      */
     private int h2 (Object key)
     {
-        return key.hashCode () % mod2;
+        return Math.floorMod (key.hashCode (), mod2);
     } // h2
 
     /********************************************************************************
@@ -4,6 +4,8 @@
  * @author   John Miller
  */
 
+import java.util.function.*;
+
 import static java.lang.System.out;
 
 /*****************************************************************************************
@@ -99,11 +101,17 @@ class MovieDB
         Table t_project = movie.project ("title year");
         t_project.print ();
 
+        out.println ();
+        Table t_pview = movie.projectView ("title year");
+        t_pview.print ();
+
         //--------------------- select
 
         out.println ();
-        Table t_select = movie.select (t -> t[movie.col("title")].equals ("Star_Wars") &&
-                t[movie.col("year")].equals (1977));
+        Function <Comparable [], Comparable> title = movie.column ("title");
+        ToIntFunction <Comparable []>        year  = movie.intColumn ("year");
+        Table t_select = movie.select (t -> title.apply (t).equals ("Star_Wars") &&
+                year.applyAsInt (t) == 1977);
         t_select.print ();
 
         //--------------------- indexed select
@@ -112,6 +120,36 @@ class MovieDB
         Table t_iselect = movieStar.select (new KeyType ("Harrison_Ford"));
         t_iselect.print ();
 
+        //--------------------- expression select
+
+        out.println ();
+        Table t_eselect = movie.select (Expr.col ("title").eq ("Star_Wars").and (Expr.col ("year").eq (1977)));
+        t_eselect.print ();
+        out.println ("plan: " + t_eselect.getPlan ());
+
+        //--------------------- dictionary-encoded select
+
+        out.println ();
+        movie.dictionaryEncode ("genre studioName");
+        Table t_dselect = movie.select (Expr.col ("studioName").in ("Fox", "Universal"));
+        t_dselect.print ();
+        out.println ("plan: " + t_dselect.getPlan ());
+
+        //--------------------- pipelined query
+
+        out.println ();
+        Query q_movie = movie.query ().join ("studioName", "name", studio)
+                                      .select (Expr.col ("year").lt (1985))
+                                      .project ("title year address");
+        out.println ("plan: " + q_movie.getPlan ());
+        q_movie.print ();
+
+        //--------------------- order by
+
+        out.println ();
+        Table t_order = movie.orderBy ("year", "desc");
+        t_order.print ();
+
         //--------------------- union
 
         out.println ();
@@ -138,6 +176,16 @@ class MovieDB
         Table t_join2 = movie.join ("title year", "title year", cinema);
         t_join2.print ();
 
+        //--------------------- semi-join and anti-join
+
+        out.println ();
+        Table t_semi = movie.semiJoin ("title year", "movieTitle movieYear", starsIn);
+        t_semi.print ();
+
+        out.println ();
+        Table t_anti = movieStar.antiJoin ("name", "starName", starsIn);
+        t_anti.print ();
+
     } // main
 
 } // MovieDB class
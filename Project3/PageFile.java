@@ -0,0 +1,115 @@
+/****************************************************************************************
+ * @file  PageFile.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/****************************************************************************************
+ * This class divides a file into fixed-size pages that are accessed by memory-mapping
+ * them one page at a time.  A page is only mapped when a BufferPool brings it in, so
+ * the file may be much larger than the heap (or RAM): the operating system pages the
+ * mapped data in and out, and the pool bounds how many pages are mapped at once.
+ */
+class PageFile
+       implements Closeable
+{
+    /** The size of a page in bytes.
+     */
+    static final int PAGE_SIZE = 8192;
+
+    /** Counter for assigning each open page file a unique id.
+     */
+    private static int count = 0;
+
+    /** The id of this page file (used by BufferPool to name its pages).
+     */
+    final int id;
+
+    /** The path of the file.
+     */
+    private final String path;
+
+    /** The channel on the file.
+     */
+    private final FileChannel ch;
+
+    /** The number of pages in the file (including allocated pages not yet written).
+     */
+    private int pages;
+
+    /************************************************************************************
+     * Open the page file with the given path, creating it if it does not exist.
+     *
+     * @param _path  the path of the file
+     */
+    PageFile (String _path)
+            throws IOException
+    {
+        synchronized (PageFile.class) { id = count++; }
+        path  = _path;
+        ch    = FileChannel.open (Paths.get (path), CREATE, READ, WRITE);
+        pages = (int) (ch.size () / PAGE_SIZE);
+    } // constructor
+
+    /************************************************************************************
+     * Return the number of pages in the file.
+     *
+     * @return  the number of pages
+     */
+    synchronized int numPages ()
+    {
+        return pages;
+    } // numPages
+
+    /************************************************************************************
+     * Allocate a new (zeroed) page at the end of the file.  The file is extended when
+     * the page is first mapped.
+     *
+     * @return  the page number of the new page
+     */
+    synchronized int allocate ()
+    {
+        return pages++;
+    } // allocate
+
+    /************************************************************************************
+     * Map the given page into memory (read-write).  Changes made to the buffer are
+     * written to the file by the operating system, or at once by force.
+     *
+     * @param pageNo  the page number
+     * @return  the mapped page
+     */
+    MappedByteBuffer map (int pageNo)
+            throws IOException
+    {
+        if (pageNo < 0 || pageNo >= numPages ()) {
+            throw new IOException (path + ": page " + pageNo + " does not exist");
+        } // if
+        return ch.map (FileChannel.MapMode.READ_WRITE, (long) pageNo * PAGE_SIZE, PAGE_SIZE);
+    } // map
+
+    /************************************************************************************
+     * Close the file.  Pages still mapped remain valid until they are unreferenced.
+     */
+    public void close ()
+            throws IOException
+    {
+        ch.close ();
+    } // close
+
+    /************************************************************************************
+     * Return the path of the file.
+     *
+     * @return  the path
+     */
+    public String toString ()
+    {
+        return path;
+    } // toString
+
+} // PageFile class
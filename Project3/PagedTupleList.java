@@ -0,0 +1,300 @@
+/****************************************************************************************
+ * @file  PagedTupleList.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/****************************************************************************************
+ * This class is a list of tuples stored in the pages of a PageFile and accessed through
+ * a BufferPool, so a table's tuples need not fit in the heap.  Page 0 describes the
+ * table (attributes, domains and key); the other pages are slotted pages:
+ *
+ *     count (int), end of the tuple data (int), tuples ..., free space ..., slots
+ *
+ * where the slots (the offsets of the tuples, as ints) grow down from the end of the
+ * page.  Tuples are encoded by TupleCodec and decoded afresh on every get, so only the
+ * page-to-row directory is kept in memory.
+ */
+class PagedTupleList
+        extends AbstractList <Comparable []>
+        implements RandomAccess
+{
+    /** The magic number starting page 0 ("MDBP").
+     */
+    private static final int MAGIC = 0x4D444250;
+
+    /** The size of a data page's header (count and end of data).
+     */
+    private static final int HEADER = 8;
+
+    /** The table's attributes, domains and primary key.
+     */
+    final String [] attribute;
+    final Class []  domain;
+    final String [] key;
+
+    /** The page file and the buffer pool it is accessed through.
+     */
+    private final PageFile   file;
+    private final BufferPool pool;
+
+    /** The codec for the tuples.
+     */
+    private final TupleCodec codec;
+
+    /** The row number of the first tuple on each page (entry 0 is unused).
+     */
+    private int [] firstRow = new int [16];
+
+    /** The number of tuples.
+     */
+    private int size = 0;
+
+    /** Buffer for encoding a tuple before copying it into a page.
+     */
+    private final ByteBuffer scratch = ByteBuffer.allocate (PageFile.PAGE_SIZE - HEADER - 4);
+
+    /************************************************************************************
+     * Construct a list over the given page file, reading the page directory.
+     */
+    private PagedTupleList (PageFile _file, BufferPool _pool, String [] _attribute,
+                            Class [] _domain, String [] _key)
+    {
+        file      = _file;
+        pool      = _pool;
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+        codec     = new TupleCodec (domain);
+        pool.attach (file);
+
+        int pages = file.numPages ();
+        firstRow  = new int [Math.max (16, pages)];
+        for (int p = 1; p < pages; p++) {
+            firstRow [p] = size;
+            BufferPool.Frame f = pool.pin (file, p);
+            size += f.page ().getInt (0);
+            pool.unpin (f, false);
+        } // for
+    } // constructor
+
+    /************************************************************************************
+     * Create a new, empty paged list for a table in the file with the given path,
+     * replacing any existing file.
+     *
+     * @param path       the path of the page file
+     * @param pool       the buffer pool to access the pages through
+     * @param attribute  the table's attributes
+     * @param domain     the table's domains
+     * @param key        the table's primary key
+     * @return  the paged list
+     */
+    static PagedTupleList create (String path, BufferPool pool, String [] attribute,
+                                  Class [] domain, String [] key)
+            throws IOException
+    {
+        new File (path).delete ();
+        PageFile file = new PageFile (path);
+
+        int              p = file.allocate ();
+        BufferPool.Frame f = pool.pin (file, p);
+        ByteBuffer       b = f.page ().duplicate ();
+        try {
+            b.putInt (MAGIC);
+            b.putShort ((short) attribute.length);
+            for (int j = 0; j < attribute.length; j++) {
+                putName (b, attribute [j]);
+                b.put (TupleCodec.typeOf (domain [j]));
+            } // for
+            b.putShort ((short) key.length);
+            for (String k : key) putName (b, k);
+        } catch (BufferOverflowException ex) {
+            throw new IOException (path + ": schema does not fit in a page");
+        } finally {
+            pool.unpin (f, true);
+        } // try
+
+        return new PagedTupleList (file, pool, attribute, domain, key);
+    } // create
+
+    /************************************************************************************
+     * Open the paged list stored in the file with the given path.
+     *
+     * @param path  the path of the page file
+     * @param pool  the buffer pool to access the pages through
+     * @return  the paged list
+     */
+    static PagedTupleList open (String path, BufferPool pool)
+            throws IOException
+    {
+        if (! new File (path).exists ()) throw new FileNotFoundException (path);
+        PageFile file = new PageFile (path);
+        if (file.numPages () == 0) throw new IOException (path + " is not a paged table file");
+
+        BufferPool.Frame f = pool.pin (file, 0);
+        ByteBuffer       b = f.page ().duplicate ();
+        try {
+            if (b.getInt () != MAGIC) throw new IOException (path + " is not a paged table file");
+            String [] attribute = new String [b.getShort ()];
+            Class []  domain    = new Class [attribute.length];
+            for (int j = 0; j < attribute.length; j++) {
+                attribute [j] = getName (b);
+                domain [j]    = TupleCodec.domainOf (b.get ());
+            } // for
+            String [] key = new String [b.getShort ()];
+            for (int k = 0; k < key.length; k++) key [k] = getName (b);
+            return new PagedTupleList (file, pool, attribute, domain, key);
+        } finally {
+            pool.unpin (f, false);
+        } // try
+    } // open
+
+    /************************************************************************************
+     * Get the i-th tuple, pinning its page only while it is decoded.
+     *
+     * @param i  the row number
+     * @return  the tuple
+     */
+    public Comparable [] get (int i)
+    {
+        int p, slot;
+        synchronized (this) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException ("row " + i + " of " + size);
+            p    = page (i);
+            slot = i - firstRow [p];
+        } // synchronized
+        BufferPool.Frame f = pool.pin (file, p);
+        try {
+            ByteBuffer b = f.page ();
+            return codec.get (b, b.getInt (PageFile.PAGE_SIZE - 4 * (slot + 1)));
+        } finally {
+            pool.unpin (f, false);
+        } // try
+    } // get
+
+    /************************************************************************************
+     * Append tuple t to the last page, starting a new page when it is full.
+     *
+     * @param t  the tuple to append
+     * @return  true
+     */
+    public synchronized boolean add (Comparable [] t)
+    {
+        scratch.clear ();
+        try {
+            codec.put (scratch, t);
+        } catch (BufferOverflowException ex) {
+            throw new IllegalArgumentException ("PagedTupleList: tuple does not fit in a page");
+        } // try
+        int len = scratch.position ();
+
+        int p = file.numPages () - 1;
+        if (p > 0) {
+            BufferPool.Frame f = pool.pin (file, p);
+            boolean done = append (f.page (), len);
+            pool.unpin (f, done);
+            if (done) {
+                size++;
+                return true;
+            } // if
+        } // if
+
+        p = file.allocate ();
+        if (p >= firstRow.length) firstRow = Arrays.copyOf (firstRow, 2 * firstRow.length);
+        firstRow [p] = size;
+        BufferPool.Frame f = pool.pin (file, p);
+        append (f.page (), len);
+        pool.unpin (f, true);
+        size++;
+        return true;
+    } // add
+
+    /************************************************************************************
+     * Return the number of tuples.
+     *
+     * @return  the number of tuples
+     */
+    public synchronized int size ()
+    {
+        return size;
+    } // size
+
+    /************************************************************************************
+     * Force the changed pages of this list to disk.
+     */
+    void flush ()
+    {
+        pool.flush (file);
+    } // flush
+
+    /************************************************************************************
+     * Flush this list's pages, drop them from the pool and close the file.
+     */
+    void close ()
+            throws IOException
+    {
+        pool.drop (file);
+        file.close ();
+    } // close
+
+    /************************************************************************************
+     * Copy the encoded tuple in scratch into the page if there is room for it and its
+     * slot.
+     *
+     * @param b    the page
+     * @param len  the length of the encoded tuple
+     * @return  whether the tuple was added
+     */
+    private boolean append (ByteBuffer b, int len)
+    {
+        int count = b.getInt (0);
+        int end   = Math.max (HEADER, b.getInt (4));
+        if (end + len + 4 * (count + 1) > PageFile.PAGE_SIZE) return false;
+
+        b.put (end, scratch.array (), 0, len);
+        b.putInt (PageFile.PAGE_SIZE - 4 * (count + 1), end);
+        b.putInt (0, count + 1);
+        b.putInt (4, end + len);
+        return true;
+    } // append
+
+    /************************************************************************************
+     * Return the page holding row i (the last page whose first row is at most i).
+     *
+     * @param i  the row number
+     * @return  the page number
+     */
+    private int page (int i)
+    {
+        int lo = 1, hi = file.numPages () - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstRow [mid] <= i) lo = mid;
+            else                     hi = mid - 1;
+        } // while
+        return lo;
+    } // page
+
+    /************************************************************************************
+     * Put a name (2 byte length and UTF-8 bytes) into the buffer.
+     */
+    private static void putName (ByteBuffer b, String s)
+    {
+        byte [] bytes = s.getBytes (StandardCharsets.UTF_8);
+        b.putShort ((short) bytes.length).put (bytes);
+    } // putName
+
+    /************************************************************************************
+     * Get a name (2 byte length and UTF-8 bytes) from the buffer.
+     */
+    private static String getName (ByteBuffer b)
+    {
+        byte [] bytes = new byte [b.getShort ()];
+        b.get (bytes);
+        return new String (bytes, StandardCharsets.UTF_8);
+    } // getName
+
+} // PagedTupleList class
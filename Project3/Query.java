@@ -0,0 +1,649 @@
+/****************************************************************************************
+ * @file  Query.java
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class provides lazy, pipelined evaluation of relational algebra expressions.
+ * A Query is a tree of operators in the iterator (Volcano) style: each operator pulls
+ * tuples from its input(s) one at a time as its own consumer asks for them, so a chain
+ * such as movie.query ().select (...).project (...) never materializes its intermediate
+ * results.  Nothing is evaluated until a sink (iterator, collect, print or save) runs
+ * the query, and a query may be run more than once.  The operator iterators are
+ * Closeable: closing one (as limit does when it has its n tuples) closes its inputs,
+ * releasing, e.g., the run files of a sort that was not read to the end.
+ *
+ * Selection, projection, bag union and limit are fully pipelined.  Union keeps only the
+ * set of keys seen so far; minus and join build a hash table on their rhs input and
+ * stream their lhs input (a join whose rhs is a base table indexed on the join
+ * attributes probes the index instead, so nothing is built).
+ *
+ * #usage movie.query ().select (Expr.col ("year").lt (1980)).project ("title year").print ()
+ */
+public class Query
+       implements Iterable <Comparable []>
+{
+    /** Name of the base table(s) the query reads (used to name collected results).
+     */
+    private final String name;
+
+    /** Attribute names of the tuples produced.
+     */
+    private final String [] attribute;
+
+    /** Map from attribute name to column position.
+     */
+    private final Map <String, Integer> attrPos;
+
+    /** Attribute domains of the tuples produced.
+     */
+    private final Class [] domain;
+
+    /** Key of the tuples produced.
+     */
+    private final String [] key;
+
+    /** Opens a new iterator over the tuples produced (one per run of the query).
+     */
+    private final Supplier <Iterator <Comparable []>> source;
+
+    /** Description of the operator tree, e.g., "Project (title) <- Scan (movie)".
+     */
+    private final String plan;
+
+    /** The base table when this query is a plain scan of it, otherwise null.
+     */
+    private final Table base;
+
+    /************************************************************************************
+     * Construct a query operator producing tuples with the given schema.
+     *
+     * @param _name       the name of the base table(s)
+     * @param _attribute  the attribute names of the tuples produced
+     * @param _domain     the attribute domains of the tuples produced
+     * @param _key        the key of the tuples produced
+     * @param _source     opens a new iterator over the tuples produced
+     * @param _plan       the description of the operator tree
+     * @param _base       the base table for a plain scan, otherwise null
+     */
+    Query (String _name, String [] _attribute, Class [] _domain, String [] _key,
+           Supplier <Iterator <Comparable []>> _source, String _plan, Table _base)
+    {
+        name      = _name;
+        attribute = _attribute;
+        attrPos   = Table.positions (attribute);
+        domain    = _domain;
+        key       = _key;
+        source    = _source;
+        plan      = _plan;
+        base      = _base;
+    } // constructor
+
+    //----------------------------------------------------------------------------------
+    // Operators
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Keep only the tuples satisfying the given predicate.
+     *
+     * #usage movie.query ().select (t -> t[movie.col("year")].equals (1977))
+     *
+     * @param predicate  the check condition for tuples
+     * @return  the query producing the qualifying tuples
+     */
+    public Query select (Predicate <Comparable []> predicate)
+    {
+        return filter (predicate, "Select");
+    } // select
+
+    /************************************************************************************
+     * Keep only the tuples satisfying the given expression, which is compiled once
+     * against this query's attributes.
+     *
+     * #usage movie.query ().select (Expr.col ("year").eq (1977))
+     *
+     * @param expr  the selection condition
+     * @return  the query producing the qualifying tuples, or null if the expression
+     *          refers to an attribute that is not found
+     */
+    public Query select (Expr expr)
+    {
+        Predicate <Comparable []> predicate;
+        try {
+            predicate = expr.compile (this::col, domain);
+        } catch (IllegalArgumentException ex) {                            // unknown attribute
+            return null;
+        } // try
+        return filter (predicate, "Select (" + expr + ")");
+    } // select
+
+    /************************************************************************************
+     * Keep only the given attributes (duplicates are not eliminated, as with
+     * Table.project).
+     *
+     * #usage movie.query ().project ("title year")
+     *
+     * @param attributes  the attributes to project onto
+     * @return  the query producing the projected tuples
+     */
+    public Query project (String attributes)
+    {
+        String [] attrs = attributes.split (" ");
+        int []    cols  = cols (attrs);
+        if (cols == null) return null;
+
+        Class [] colDomain = new Class [cols.length];
+        for (int j = 0; j < cols.length; j++) colDomain [j] = domain [cols [j]];
+        String [] newKey = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+
+        return new Query (name, attrs, colDomain, newKey, () -> {
+            Iterator <Comparable []> in = source.get ();
+            return new Lookahead (in) {
+                Comparable [] advance ()
+                {
+                    if (! in.hasNext ()) return null;
+                    Comparable [] t = in.next ();
+                    Comparable [] u = new Comparable [cols.length];
+                    for (int j = 0; j < cols.length; j++) u [j] = t [cols [j]];
+                    return u;
+                } // advance
+            };
+        }, "Project (" + attributes + ") <- " + plan, null);
+    } // project
+
+    /************************************************************************************
+     * Union this query's tuples with q2's, eliminating duplicates as Table.union does
+     * (compared on the key when both share the same key, otherwise on all values).
+     *
+     * #usage movie.query ().union (cinema.query ())
+     *
+     * @param q2  the rhs query in the union operation
+     * @return  the query producing the union
+     */
+    public Query union (Query q2)
+    {
+        if (! compatible (q2)) return null;
+
+        boolean byKey  = Arrays.equals (key, q2.key);
+        int []  t_cols = byKey ? cols (key) : allColumns ();
+        int []  u_cols = byKey ? q2.cols (q2.key) : allColumns ();
+
+        return new Query (name, attribute, domain, key, () -> {
+            Iterator <Comparable []> left  = source.get ();
+            Iterator <Comparable []> right = q2.source.get ();
+            Set <KeyType>            seen  = new HashSet <> ();
+            return new Lookahead (left, right) {
+                Comparable [] advance ()
+                {
+                    while (left.hasNext ()) {
+                        Comparable [] t = left.next ();
+                        if (seen.add (Table.keyOf (t, t_cols))) return t;
+                    } // while
+                    while (right.hasNext ()) {
+                        Comparable [] t = right.next ();
+                        if (seen.add (Table.keyOf (t, u_cols))) return t;
+                    } // while
+                    return null;
+                } // advance
+            };
+        }, "Union <- (" + plan + ", " + q2.plan + ")", null);
+    } // union
+
+    /************************************************************************************
+     * Concatenate this query's tuples with q2's without eliminating duplicates.
+     *
+     * #usage movie.query ().unionAll (cinema.query ())
+     *
+     * @param q2  the rhs query in the union operation
+     * @return  the query producing the bag union
+     */
+    public Query unionAll (Query q2)
+    {
+        if (! compatible (q2)) return null;
+
+        return new Query (name, attribute, domain, key, () -> {
+            Iterator <Comparable []> left  = source.get ();
+            Iterator <Comparable []> right = q2.source.get ();
+            return new Lookahead (left, right) {
+                Comparable [] advance ()
+                {
+                    if (left.hasNext ())  return left.next ();
+                    if (right.hasNext ()) return right.next ();
+                    return null;
+                } // advance
+            };
+        }, "UnionAll <- (" + plan + ", " + q2.plan + ")", null);
+    } // unionAll
+
+    /************************************************************************************
+     * Keep only this query's tuples that are not produced by q2 (compared on all
+     * values).  The rhs is read into a hash set when the query is run.
+     *
+     * #usage movie.query ().minus (cinema.query ())
+     *
+     * @param q2  the rhs query in the minus operation
+     * @return  the query producing the difference
+     */
+    public Query minus (Query q2)
+    {
+        if (! compatible (q2)) return null;
+
+        int [] cols = allColumns ();
+
+        return new Query (name, attribute, domain, key, () -> {
+            Set <KeyType> set = new HashSet <> ();
+            for (Iterator <Comparable []> it = q2.source.get (); it.hasNext (); ) set.add (Table.keyOf (it.next (), cols));
+            Iterator <Comparable []> left = source.get ();
+            return new Lookahead (left) {
+                Comparable [] advance ()
+                {
+                    while (left.hasNext ()) {
+                        Comparable [] t = left.next ();
+                        if (! set.contains (Table.keyOf (t, cols))) return t;
+                    } // while
+                    return null;
+                } // advance
+            };
+        }, "Minus (hash) <- (" + plan + ", " + q2.plan + ")", null);
+    } // minus
+
+    /************************************************************************************
+     * Equi-join this query's tuples with q2's, producing the concatenation of each
+     * matching pair (as Table.join does).  When q2 is a plain scan of a table indexed
+     * on the join attributes, the index is probed for each lhs tuple; otherwise a hash
+     * table on q2's tuples is built when the query is run and probed by the lhs.  The
+     * index is checked again each time the query is run, falling back to the hash
+     * join if it no longer holds every tuple of the table.
+     *
+     * #usage movie.query ().join ("studioName", "name", studio.query ())
+     *
+     * @param attributes1  the attributes of this query to be compared (Foreign Key)
+     * @param attributes2  the attributes of q2 to be compared (Primary Key)
+     * @param q2           the rhs query in the join operation
+     * @return  the query producing the joined tuples
+     */
+    public Query join (String attributes1, String attributes2, Query q2)
+    {
+        String [] t_attrs = attributes1.split (" ");
+        String [] u_attrs = attributes2.split (" ");
+        if (t_attrs.length != u_attrs.length) {
+            out.println ("join ERROR: attribute lists have different lengths");
+            return null;
+        } // if
+
+        int [] t_cols = cols (t_attrs);
+        int [] u_cols = q2.cols (u_attrs);
+        if (t_cols == null || u_cols == null) return null;
+        for (int i = 0; i < t_cols.length; i++) {
+            if (domain [t_cols [i]] != q2.domain [u_cols [i]]) {
+                out.println ("join ERROR: " + t_attrs [i] + " and " + u_attrs [i] + " disagree on domain");
+                return null;
+            } // if
+        } // for
+
+        Supplier <Iterator <Comparable []>> hashed = () -> {
+            Map <KeyType, List <Comparable []>> table = new HashMap <> ();
+            for (Iterator <Comparable []> it = q2.source.get (); it.hasNext (); ) {
+                Comparable [] u = it.next ();
+                table.computeIfAbsent (Table.keyOf (u, u_cols), k -> new ArrayList <> (1)).add (u);
+            } // for
+            Iterator <Comparable []> left = source.get ();
+            return new Lookahead (left) {
+                Comparable []            t       = null;
+                Iterator <Comparable []> matches = Collections.emptyIterator ();
+
+                Comparable [] advance ()
+                {
+                    while (! matches.hasNext ()) {
+                        if (! left.hasNext ()) return null;
+                        t = left.next ();
+                        List <Comparable []> m = table.get (Table.keyOf (t, t_cols));
+                        if (m != null) matches = m.iterator ();
+                    } // while
+                    return ArrayUtil.concat (t, matches.next ());
+                } // advance
+            };
+        };
+
+        Supplier <Iterator <Comparable []>> joined;
+        String                              method;
+
+        if (q2.base != null && q2.base.keyedOn (u_attrs)) {
+            method = "index";
+            int [] p_cols = new int [q2.key.length];                   // lhs columns in key order
+            for (int j = 0; j < p_cols.length; j++) {
+                p_cols [j] = t_cols [Arrays.asList (u_attrs).indexOf (q2.key [j])];
+            } // for
+            joined = () -> {
+                if (! q2.base.keyedOn (u_attrs)) return hashed.get ();    // e.g., duplicates inserted
+                Iterator <Comparable []> left = source.get ();
+                return new Lookahead (left) {
+                    Comparable [] advance ()
+                    {
+                        while (left.hasNext ()) {
+                            Comparable [] t = left.next ();
+                            Comparable [] u = q2.base.get (Table.keyOf (t, p_cols));
+                            if (u != null) return ArrayUtil.concat (t, u);
+                        } // while
+                        return null;
+                    } // advance
+                };
+            };
+        } else {
+            method = "hash";
+            joined = hashed;
+        } // if
+
+        return new Query (name, ArrayUtil.concat (attribute, q2.attribute),
+                          ArrayUtil.concat (domain, q2.domain), ArrayUtil.concat (key, q2.key), joined,
+                          "Join (" + method + ") <- (" + plan + ", " + q2.plan + ")", null);
+    } // join
+
+    /************************************************************************************
+     * Equi-join this query's tuples with table2's (see join (String, String, Query)).
+     *
+     * #usage movie.query ().join ("studioName", "name", studio)
+     *
+     * @param attributes1  the attributes of this query to be compared (Foreign Key)
+     * @param attributes2  the attributes of table2 to be compared (Primary Key)
+     * @param table2       the rhs table in the join operation
+     * @return  the query producing the joined tuples
+     */
+    public Query join (String attributes1, String attributes2, Table table2)
+    {
+        return join (attributes1, attributes2, table2.query ());
+    } // join
+
+    /************************************************************************************
+     * Produce at most the first n tuples.  The input is not read beyond them.
+     *
+     * #usage movie.query ().limit (10)
+     *
+     * @param n  the maximum number of tuples
+     * @return  the query producing at most n tuples
+     */
+    public Query limit (int n)
+    {
+        return new Query (name, attribute, domain, key, () -> {
+            Iterator <Comparable []> in = source.get ();
+            return new Lookahead (in) {
+                int produced = 0;
+
+                Comparable [] advance ()
+                {
+                    if (produced >= n) {
+                        close ();
+                        return null;
+                    } // if
+                    if (! in.hasNext ()) return null;
+                    produced++;
+                    return in.next ();
+                } // advance
+            };
+        }, "Limit (" + n + ") <- " + plan, null);
+    } // limit
+
+    /************************************************************************************
+     * Produce the first n tuples in the order given by the attributes and directions
+     * (as for Table.orderBy).  When the query is run the input is read once, keeping
+     * only the best n tuples in a bounded heap.
+     *
+     * #usage movie.query ().select (Expr.col ("year").lt (1980)).topN (20, "length", "desc")
+     *
+     * @param n           the number of tuples wanted
+     * @param attributes  the attributes to order on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (missing ones are "asc")
+     * @return  the query producing the first n tuples in order
+     */
+    public Query topN (int n, String attributes, String directions)
+    {
+        int []     cols = cols (attributes.split (" "));
+        boolean [] desc = Table.descending (directions, attributes.split (" ").length);
+        if (cols == null || desc == null) return null;
+
+        Comparator <Comparable []> cmp = Table.comparator (domain, cols, desc);
+        return new Query (name, attribute, domain, key, () -> Table.topN (source.get (), n, cmp).iterator (),
+                          "TopN (" + n + "; " + attributes + ") <- " + plan, null);
+    } // topN
+
+    /************************************************************************************
+     * Produce the tuples in the order given by the attributes and directions (as for
+     * Table.orderBy).  When the query is run the input is read once; inputs larger
+     * than the memory budget (see Table.setMemoryBudget) are spilled as sorted runs
+     * to temporary files and merged as the result is read, so the sorted tuples are
+     * never all in memory.
+     *
+     * #usage movie.query ().orderBy ("year length", "desc asc").print ()
+     *
+     * @param attributes  the attributes to sort on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (missing ones are "asc")
+     * @return  the query producing the tuples in sorted order
+     */
+    public Query orderBy (String attributes, String directions)
+    {
+        int []     cols = cols (attributes.split (" "));
+        boolean [] desc = Table.descending (directions, attributes.split (" ").length);
+        if (cols == null || desc == null) return null;
+
+        return new Query (name, attribute, domain, key, () -> Table.sort (source.get (), name, domain, cols, desc),
+                          "Sort (" + attributes + ") <- " + plan, null);
+    } // orderBy
+
+    //----------------------------------------------------------------------------------
+    // Sinks
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Run the query, returning an iterator over the tuples it produces.  An iterator
+     * that is not read to the end should be closed (it is Closeable) to release the
+     * resources of operators such as orderBy.
+     *
+     * @return  an iterator over the result tuples
+     */
+    public Iterator <Comparable []> iterator ()
+    {
+        return source.get ();
+    } // iterator
+
+    /************************************************************************************
+     * Run the query, materializing its result as a new table.
+     *
+     * @return  a table holding the result tuples
+     */
+    public Table collect ()
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : this) rows.add (t);
+        return Table.result (name, attribute, domain, key, rows, plan);
+    } // collect
+
+    /************************************************************************************
+     * Run the query, printing the tuples as they are produced.
+     */
+    public void print ()
+    {
+        Table.print (name, attribute, this);
+    } // print
+
+    /************************************************************************************
+     * Run the query, saving its result as a table.
+     *
+     * @return  the saved table
+     */
+    public Table save ()
+    {
+        Table result = collect ();
+        result.save ();
+        return result;
+    } // save
+
+    /************************************************************************************
+     * Return the description of the operator tree.
+     *
+     * @return  the plan
+     */
+    public String getPlan ()
+    {
+        return plan;
+    } // getPlan
+
+    /************************************************************************************
+     * Return the attribute names of the tuples produced.
+     *
+     * @return  the attribute names
+     */
+    public String [] getAttributes ()
+    {
+        return attribute.clone ();
+    } // getAttributes
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Keep only the tuples satisfying the given predicate.
+     *
+     * @param predicate  the check condition for tuples
+     * @param label      the description of the operator for the plan
+     * @return  the query producing the qualifying tuples
+     */
+    private Query filter (Predicate <Comparable []> predicate, String label)
+    {
+        return new Query (name, attribute, domain, key, () -> {
+            Iterator <Comparable []> in = source.get ();
+            return new Lookahead (in) {
+                Comparable [] advance ()
+                {
+                    while (in.hasNext ()) {
+                        Comparable [] t = in.next ();
+                        if (predicate.test (t)) return t;
+                    } // while
+                    return null;
+                } // advance
+            };
+        }, label + " <- " + plan, null);
+    } // filter
+
+    /************************************************************************************
+     * Return the column position for the given attribute name (-1 if not found).
+     *
+     * @param attr  the attribute name
+     * @return  the column position
+     */
+    private int col (String attr)
+    {
+        Integer j = attrPos.get (attr);
+        return (j == null) ? -1 : j;
+    } // col
+
+    /************************************************************************************
+     * Return the column positions for the given attribute names, or null (with a
+     * message) if one is not found.
+     *
+     * @param attrs  the attribute names
+     * @return  the column positions
+     */
+    private int [] cols (String [] attrs)
+    {
+        int [] c = new int [attrs.length];
+        for (int j = 0; j < attrs.length; j++) {
+            c [j] = col (attrs [j]);
+            if (c [j] < 0) {
+                out.println ("query ERROR: attribute " + attrs [j] + " not found");
+                return null;
+            } // if
+        } // for
+        return c;
+    } // cols
+
+    /************************************************************************************
+     * Return the positions of all the columns.
+     *
+     * @return  the array 0, 1, ..., arity - 1
+     */
+    private int [] allColumns ()
+    {
+        int [] c = new int [attribute.length];
+        for (int j = 0; j < c.length; j++) c [j] = j;
+        return c;
+    } // allColumns
+
+    /************************************************************************************
+     * Determine whether this query and q2 produce union compatible tuples.
+     *
+     * @param q2  the rhs query
+     * @return  whether the two are union compatible
+     */
+    private boolean compatible (Query q2)
+    {
+        if (! Arrays.equals (domain, q2.domain)) {
+            out.println ("compatible ERROR: queries disagree on arity or domains");
+            return false;
+        } // if
+        return true;
+    } // compatible
+
+    /************************************************************************************
+     * Close the given operator iterator if it holds resources (see Table.sort).
+     *
+     * @param it  the iterator
+     */
+    static void close (Iterator <?> it)
+    {
+        if (! (it instanceof Closeable)) return;
+        try {
+            ((Closeable) it).close ();
+        } catch (IOException ex) {
+            out.println ("query: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // close
+
+    /************************************************************************************
+     * This class simplifies writing operator iterators: advance returns the next tuple,
+     * or null when there are no more, and is called at most once ahead of next.
+     * Closing the iterator closes its inputs.
+     */
+    private static abstract class Lookahead
+            implements Iterator <Comparable []>, Closeable
+    {
+        private Comparable [] nextTuple = null;
+        private boolean       done      = false;
+        private final Iterator <?> [] inputs;
+
+        Lookahead (Iterator <?> ... _inputs) { inputs = _inputs; }
+
+        abstract Comparable [] advance ();
+
+        public void close ()
+        {
+            done      = true;
+            nextTuple = null;
+            for (Iterator <?> in : inputs) Query.close (in);
+        } // close
+
+        public boolean hasNext ()
+        {
+            if (nextTuple == null && ! done) {
+                nextTuple = advance ();
+                done      = nextTuple == null;
+            } // if
+            return nextTuple != null;
+        } // hasNext
+
+        public Comparable [] next ()
+        {
+            if (! hasNext ()) throw new NoSuchElementException ();
+            Comparable [] t = nextTuple;
+            nextTuple = null;
+            return t;
+        } // next
+    } // Lookahead class
+
+} // Query class
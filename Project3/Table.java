@@ -5,7 +5,10 @@
  */
 
 import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -29,10 +32,89 @@ public class Table
      */
     private static final String EXT = ".dbf";
 
+    /** Filename extension for database files written by saveObject
+     */
+    private static final String OBJ_EXT = ".ser";
+
     /** Counter for naming temporary tables.
      */
     private static int count = 0;
 
+    /** Target number of build-side tuples per partition for the parallel hash join,
+     *  small enough that a partition's hash table stays cache resident.
+     */
+    private static final int PARTITION_TUPLES = 4096;
+
+    /** Degree of parallelism for parallel operators.
+     */
+    private static int parallelism = Runtime.getRuntime ().availableProcessors ();
+
+    /** Pool of worker threads for parallel operators (created on first use).
+     */
+    private static ForkJoinPool pool = null;
+
+    /** Smallest number of tuples a parallel scan hands to a single task.
+     */
+    private static final int MIN_CHUNK = 1024;
+
+    /** Number of rows per column batch for batch (vectorized) selection.
+     */
+    private static final int BATCH = 1024;
+
+    /** Aggregate functions supported by groupBy.
+     */
+    private static final int COUNT = 0, SUM = 1, AVG = 2, MIN = 3, MAX = 4;
+
+    /** Memory budget (in bytes) for the working data of memory-hungry operators, e.g.,
+     *  the build side of a hash join.  Operators exceeding it spill to DIR.
+     */
+    private static long memoryBudget = Runtime.getRuntime ().maxMemory () / 4;
+
+    /** Buffer size for spill files.
+     */
+    private static final int SPILL_BUFFER = 1 << 16;
+
+    /** Buffer pool for tables whose tuples are kept in pages (created on first use),
+     *  and the number of frames it is to have.
+     */
+    private static BufferPool bufferPool = null;
+    private static int poolFrames = 4096;
+
+    /** Filename extension for page files (see page)
+     */
+    private static final String PAGE_EXT = ".pg";
+
+    /** Filename extension for write-ahead logs
+     */
+    private static final String WAL_EXT = ".wal";
+
+    /** Whether inserts are recorded in a write-ahead log.
+     */
+    private static boolean logging = true;
+
+    /** Filename extension for delta files (store/<name>.<n>.delta, see save)
+     */
+    private static final String DELTA_EXT = ".delta";
+
+    /** Number of delta files after which a table's files are compacted.
+     */
+    private static int compactDeltas = 8;
+
+    /** Thread compacting tables' files in the background (created on first use).
+     */
+    private static ExecutorService compactor = null;
+
+    /** Locks serializing the rewriting (full saves, compaction) and loading of each
+     *  table's files, by table name.
+     */
+    private static final Map <String, Object> fileLocks = new ConcurrentHashMap <> ();
+
+    /** Whether hash joins (and semi/anti joins) pre-filter the probe side with a Bloom
+     *  filter built from the build side, and the false-positive rate it is sized for.
+     */
+    private static boolean bloomFilter = false;
+    private static final double BLOOM_FPP = 0.01;
+
     /** Table name.
      */
     private final String name;
@@ -41,6 +123,10 @@ public class Table
      */
     private final String [] attribute;
 
+    /** Map from attribute name to column position (so lookups by name are O(1)).
+     */
+    private final Map <String, Integer> attrPos;
+
     /** Array of attribute domains: a domain may be
      *  integer types: Long, Integer, Short, Byte
      *  real types: Double, Float
@@ -48,17 +134,228 @@ public class Table
      */
     private final Class [] domain;
 
-    /** Collection of tuples (data storage).
+    /** Collection of tuples (data storage).  For a view made by projectView this is a
+     *  ProjectedList over the parent's tuples until the view is materialized.
      */
-    private final List <Comparable []> tuples;
+    private List <Comparable []> tuples;
 
     /** Primary key. 
      */
     private final String [] key;
 
-    /** Index into tuples (maps key to tuple number).
+    /** Index into tuples (maps key to tuple number).  Tables whose tuples are kept in
+     *  pages (see page) have an empty index, since it would hold every tuple in memory.
+     */
+    private Map <KeyType, Comparable []> index;
+
+    /** Number of distinct keys that have been entered into the index (tuples passed in
+     *  at construction are not indexed).  The index holds every tuple only when this
+     *  equals the number of tuples; a duplicate key overwrites an earlier entry.
+     */
+    private int indexed = 0;
+
+    /** Dictionaries of the dictionary-encoded String columns, by column position (see
+     *  dictionaryEncode).
+     */
+    private final Map <Integer, ColumnDictionary> dicts;
+
+    /** Write-ahead log of the inserts into this table (opened on the first insert).
+     */
+    private transient WriteAheadLog wal = null;
+
+    /** LSN of the last logged insert included in the table's saved file (for a new
+     *  table, the last LSN used by an earlier table of the same name; see attach).
+     */
+    private long checkpoint = 0;
+
+    /** Whether the checkpoint accounts for the files in store/ of any earlier table of
+     *  the same name (set by load, or by attach on the first insert or save).
+     */
+    private transient boolean attached = false;
+
+    /** Number of tuples already in the table's saved files (later ones go in the next
+     *  delta file), and the numbers of the last delta file written and of the last one
+     *  merged into the base file (or scheduled to be).
+     */
+    private int saved = 0, lastDelta = 0, merged = 0;
+
+    /** Description of the physical plan that produced this table, e.g., "IndexScan (year)"
+     *  or "FullScan" (null for base tables).
+     */
+    private String plan = null;
+
+    /** Map implementations that may be used for the index.
+     */
+    public enum MapType { TREE_MAP, BPTREE_MAP, LINHASH_MAP, EXTHASH_MAP }
+
+    /** Algorithms available for evaluating an equijoin.  AUTO lets the table pick
+     *  a plan based on the indices available.
+     */
+    public enum JoinMethod { AUTO, NESTED_LOOP, HASH, SORT_MERGE, INDEX, PARALLEL_HASH, GRACE_HASH }
+
+    /************************************************************************************
+     * This inner class splits a range of a random-access list of tuples into chunks
+     * for parallel scans.  Splitting halves the range until it is no larger than the
+     * chunk size.
+     */
+    private static class TupleSpliterator
+            implements Spliterator <Comparable []>
+    {
+        private final List <Comparable []> list;
+        private final int                  chunk;
+        private final boolean              ordered;
+        private int                        lo;
+        private final int                  hi;
+
+        TupleSpliterator (List <Comparable []> _list, int _lo, int _hi, int _chunk, boolean _ordered)
+        {
+            list    = _list;
+            lo      = _lo;
+            hi      = _hi;
+            chunk   = _chunk;
+            ordered = _ordered;
+        } // constructor
+
+        public boolean tryAdvance (Consumer <? super Comparable []> action)
+        {
+            if (lo >= hi) return false;
+            action.accept (list.get (lo++));
+            return true;
+        } // tryAdvance
+
+        public void forEachRemaining (Consumer <? super Comparable []> action)
+        {
+            for (int i = lo; i < hi; i++) action.accept (list.get (i));
+            lo = hi;
+        } // forEachRemaining
+
+        public Spliterator <Comparable []> trySplit ()
+        {
+            if (hi - lo <= chunk) return null;
+            int mid = (lo + hi) >>> 1;
+            TupleSpliterator prefix = new TupleSpliterator (list, lo, mid, chunk, ordered);
+            lo = mid;
+            return prefix;
+        } // trySplit
+
+        public long estimateSize ()
+        {
+            return hi - lo;
+        } // estimateSize
+
+        public int characteristics ()
+        {
+            return SIZED | SUBSIZED | NONNULL | (ordered ? ORDERED : 0);
+        } // characteristics
+    } // TupleSpliterator inner class
+
+    /************************************************************************************
+     * This inner class is a read-only view of a list of tuples projected onto some of
+     * their columns.  Nothing is copied when the view is made; each access builds the
+     * projected tuple from the underlying one.  Views of views compose their column
+     * mappings, so they always read the original tuples directly.
+     */
+    private static class ProjectedList
+            extends AbstractList <Comparable []>
+            implements RandomAccess
+    {
+        private final List <Comparable []> base;
+        private final int []               cols;
+
+        ProjectedList (List <Comparable []> _base, int [] _cols)
+        {
+            if (_base instanceof ProjectedList) {
+                ProjectedList p = (ProjectedList) _base;
+                int [] c = new int [_cols.length];
+                for (int j = 0; j < c.length; j++) c [j] = p.cols [_cols [j]];
+                base = p.base;
+                cols = c;
+            } else {
+                base = _base;
+                cols = _cols;
+            } // if
+        } // constructor
+
+        public Comparable [] get (int i)
+        {
+            Comparable [] t = base.get (i);
+            Comparable [] u = new Comparable [cols.length];
+            for (int j = 0; j < cols.length; j++) u [j] = t [cols [j]];
+            return u;
+        } // get
+
+        public int size ()
+        {
+            return base.size ();
+        } // size
+    } // ProjectedList inner class
+
+    /************************************************************************************
+     * This inner class accumulates the aggregates of one group for groupBy.  The
+     * aggregate functions and columns are held by groupBy and passed in.
      */
-    private final Map <KeyType, Comparable []> index;
+    private static class GroupState
+    {
+        Comparable [] values;           // values of the grouping attributes
+        long          count = 0;        // number of tuples in the group
+        long []       lsum;             // sums of integral columns
+        double []     dsum;             // sums of real columns
+        Comparable [] ext;              // current min or max
+
+        GroupState (Comparable [] _values, int n)
+        {
+            values = _values;
+            lsum = new long [n];
+            dsum = new double [n];
+            ext  = new Comparable [n];
+        } // constructor
+
+        /** Add tuple t to the group. */
+        @SuppressWarnings("unchecked")
+        void add (Comparable [] t, int [] fn, int [] cols, boolean [] integral)
+        {
+            count++;
+            for (int j = 0; j < fn.length; j++) {
+                switch (fn [j]) {
+                case SUM: case AVG:
+                    if (integral [j]) lsum [j] += ((Number) t [cols [j]]).longValue ();
+                    else              dsum [j] += ((Number) t [cols [j]]).doubleValue ();
+                    break;
+                case MIN:
+                    if (ext [j] == null || t [cols [j]].compareTo (ext [j]) < 0) ext [j] = t [cols [j]];
+                    break;
+                case MAX:
+                    if (ext [j] == null || t [cols [j]].compareTo (ext [j]) > 0) ext [j] = t [cols [j]];
+                } // switch
+            } // for
+        } // add
+
+        /** Merge the partial aggregates of the same group from another chunk. */
+        @SuppressWarnings("unchecked")
+        void merge (GroupState g, int [] fn)
+        {
+            count += g.count;
+            for (int j = 0; j < fn.length; j++) {
+                lsum [j] += g.lsum [j];
+                dsum [j] += g.dsum [j];
+                if (ext [j] == null || (g.ext [j] != null && (fn [j] == MIN ? g.ext [j].compareTo (ext [j]) < 0
+                                                                             : g.ext [j].compareTo (ext [j]) > 0))) {
+                    ext [j] = g.ext [j];
+                } // if
+            } // for
+        } // merge
+
+        /** Return the value of the j-th aggregate. */
+        Comparable result (int j, int [] fn, boolean [] integral)
+        {
+            switch (fn [j]) {
+            case COUNT: return (int) count;
+            case SUM:   return integral [j] ? (Comparable) lsum [j] : (Comparable) dsum [j];
+            case AVG:   return (integral [j] ? (double) lsum [j] : dsum [j]) / count;
+            default:    return ext [j];
+            } // switch
+        } // result
+    } // GroupState inner class
 
     //----------------------------------------------------------------------------------
     // Constructors
@@ -74,12 +371,7 @@ public class Table
      */  
     public Table (String _name, String [] _attribute, Class [] _domain, String [] _key)
     {
-        name      = _name;
-        attribute = _attribute;
-        domain    = _domain;
-        key       = _key;
-        tuples    = new ArrayList <> ();
-        index     = new TreeMap <> ();       // also try BPTreeMap, LinHashMap or ExtHashMap
+        this (_name, _attribute, _domain, _key, new ArrayList <> (), MapType.TREE_MAP);
     } // constructor
 
     /************************************************************************************
@@ -93,13 +385,32 @@ public class Table
      */  
     public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
                   List <Comparable []> _tuples)
+    {
+        this (_name, _attribute, _domain, _key, _tuples, MapType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list,
+     * using the given type of map for the index.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _tuple      the list of tuples containing the data
+     * @param _mapType    the map implementation to use for the index
+     */  
+    public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
+                  List <Comparable []> _tuples, MapType _mapType)
     {
         name      = _name;
         attribute = _attribute;
         domain    = _domain;
         key       = _key;
         tuples    = _tuples;
-        index     = new TreeMap <> ();       // also try BPTreeMap, LinHashMap or ExtHashMap
+        index     = makeMap (_mapType);
+        dicts     = new HashMap <> ();
+        attrPos   = positions (attribute);
     } // constructor
 
     /************************************************************************************
@@ -111,7 +422,25 @@ public class Table
      */
     public Table (String name, String attributes, String domains, String _key)
     {
-        this (name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "));
+        this (name, attributes, domains, _key, MapType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given
+     * type of map for the index.
+     *
+     * #usage new Table ("studio", "name address presNo", "String String Integer", "name",
+     *                   MapType.EXTHASH_MAP)
+     *
+     * @param name        the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _mapType    the map implementation to use for the index
+     */
+    public Table (String name, String attributes, String domains, String _key, MapType _mapType)
+    {
+        this (name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "),
+              new ArrayList <> (), _mapType);
 
         out.println ("DDL> create table " + name + " (" + attributes + ")");
     } // constructor
@@ -127,516 +456,3005 @@ public class Table
      * #usage movie.project ("title year studioNo")
      *
      * @param attributes  the attributes to project onto
-     * @return  a table of projected tuples
+     * @return  a table of projected tuples, or null if an attribute is not found
      */
     public Table project (String attributes)
     {
         out.println ("RA> " + name + ".project (" + attributes + ")");
-        String [] attrs     = attributes.split (" ");
-        Class []  colDomain = extractDom (match (attrs), domain);
-        String [] newKey    = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
-
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable []>();
-        int [] columns = match(attrs);
-
-        Comparable [] t;
-        for (int i = 0; i < tuples.size(); i++) {
-            t = new Comparable[columns.length];
-            for (int j = 0; j < columns.length; j++) {
-                t[j] = this.tuples.get(i)[columns[j]];
-            }
-            rows.add(t);
-        }
-
-        return new Table (name + count++, attrs, colDomain, newKey, rows);
+        Query q = query ().project (attributes);
+        if (q == null) {
+            out.println ("project ERROR: cannot project " + name + " onto " + attributes);
+            return null;
+        } // if
+        return q.collect ();
     } // project
 
     /************************************************************************************
-     * Select the tuples satisfying the given predicate (Boolean function).
+     * Project the tuples onto a lower dimension without copying them: the result is a
+     * view that maps its columns onto this table's tuples and builds projected tuples
+     * only as they are read (e.g., by print, select or a further projection).  The
+     * view reads this table's current tuples, so later insertions here show through.
+     * The view makes its own copy of the tuples the first time it is inserted into or
+     * saved.
      *
-     * #usage movie.select (t -> t[movie.col("year")].equals (1977))
+     * #usage movie.projectView ("title year")
      *
-     * @param predicate  the check condition for tuples
-     * @return  a table with tuples satisfying the predicate
+     * @param attributes  the attributes to project onto
+     * @return  a view table of projected tuples
      */
-    public Table select (Predicate <Comparable []> predicate)
+    public Table projectView (String attributes)
     {
-        out.println ("RA> " + name + ".select (" + predicate + ")");
+        out.println ("RA> " + name + ".projectView (" + attributes + ")");
+        String [] attrs = attributes.split (" ");
+        int []    cols  = match (attrs);
+        String [] newKey = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
 
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable[]>();
-        int rowLength = this.tuples.size();
-        Comparable [] tuple;
-        TreeMap index = new TreeMap <> ();
-        String key_s = this.key[0];
-
-
-        for(int i = 0; i < rowLength; i++) {
-            tuple = this.tuples.get(i);
-            if(predicate.test(tuple) == true) {
-                rows.add(tuple);
-                index.put(key_s, tuple);
-            }
-        }
-
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // select
+        Table result = new Table (name + count++, attrs, extractDom (cols, domain), newKey,
+                                  new ProjectedList (tuples, cols));
+        result.plan  = "ProjectView (" + attributes + ")";
+        return result;
+    } // projectView
 
     /************************************************************************************
-     * Select the tuples satisfying the given key predicate (key = value).  Use an index
-     * (Map) to retrieve the tuple with the given key value.
+     * Project the tuples onto the given attributes, eliminating duplicate tuples.  If
+     * the attributes include the key, the projected tuples are already distinct and
+     * no duplicate elimination is done.  Otherwise the projected tuples are
+     * deduplicated with a hash set; when they are estimated to exceed the memory
+     * budget (see setMemoryBudget), they are first hash-partitioned into temporary
+     * files and each partition is deduplicated in turn.
      *
-     * @param keyVal  the given key value
-     * @return  a table with the tuple satisfying the key predicate
+     * #usage movie.projectDistinct ("genre studioName")
+     *
+     * @param attributes  the attributes to project onto
+     * @return  a table of distinct projected tuples, or null if spilling failed
      */
-    public Table select (KeyType keyVal)
+    public Table projectDistinct (String attributes)
     {
-        out.println ("RA> " + name + ".select (" + keyVal + ")");
+        out.println ("RA> " + name + ".projectDistinct (" + attributes + ")");
+        String [] attrs     = attributes.split (" ");
+        int []    cols      = match (attrs);
+        Class []  colDomain = extractDom (cols, domain);
+
+        if (Arrays.asList (attrs).containsAll (Arrays.asList (key))) {
+            Table result = new Table (name + count++, attrs, colDomain, key,
+                                      new ArrayList <> (new ProjectedList (tuples, cols)));
+            result.plan  = "Project (key preserved)";
+            return result;
+        } // if
 
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable[]>();
-        int rowLength = this.tuples.size();
-        Comparable [] tuple;
-        String [] key = this.key;
-        int attr_len = attribute.length;
-        int key_num = 0;
-        String s_keyVal = keyVal.toString();
-        s_keyVal = s_keyVal.substring(6,s_keyVal.length() - 2);
-
-        for(int i = 0; i < attr_len; i++) {
-            if(key[0].equals(this.attribute[i]))
-                break;
-            key_num++;
-        }
+        List <Comparable []> projected = new ProjectedList (tuples, cols);
+        int []               all       = new int [attrs.length];
+        for (int j = 0; j < all.length; j++) all [j] = j;
 
-        for(int i = 0; i < rowLength; i++) {
-            tuple = this.tuples.get(i);
-            if(tuple[key_num].equals(s_keyVal) == true) {
-                rows.add(tuple);
-            }
-        }
+        List <Comparable []> rows = new ArrayList <> ();
+        String               access;
+        long                 size = estimateSize (projected);
 
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // select
+        if (size <= memoryBudget) {
+            access = "HashDistinct";
+            Set <KeyType> seen = new HashSet <> ();
+            for (Comparable [] t : projected) {
+                if (seen.add (keyOf (t, all))) rows.add (t);
+            } // for
+        } else {
+            int bits = 1;
+            while ((1L << bits) * memoryBudget < 2 * size && bits < 10) bits++;
+            access = "HashDistinct (spilled to " + (1 << bits) + " partitions)";
+
+            TupleCodec codec = new TupleCodec (colDomain);
+            File []    files = new File [1 << bits];
+            try {
+                int [] counts = spill (projected, all, bits, codec, files, "distinct", null);
+                for (int p = 0; p < files.length; p++) {
+                    Set <KeyType> seen = new HashSet <> (2 * counts [p]);
+                    try (DataInputStream in = openSpill (files [p])) {
+                        for (int i = 0; i < counts [p]; i++) {
+                            Comparable [] t = codec.read (in);
+                            if (seen.add (keyOf (t, all))) rows.add (t);
+                        } // for
+                    } // try
+                } // for
+            } catch (IOException ex) {
+                out.println ("projectDistinct: IO Exception");
+                ex.printStackTrace ();
+                return null;
+            } finally {
+                for (File f : files) if (f != null) f.delete ();
+            } // try
+        } // if
+
+        Table result = new Table (name + count++, attrs, colDomain, attrs, rows);
+        result.plan  = access;
+        return result;
+    } // projectDistinct
 
     /************************************************************************************
-     * Union this table and table2.  Check that the two tables are compatible.
+     * Group the tuples on the given attributes and compute the given aggregates for
+     * each group.  An aggregate is one of "count", "sum(a)", "avg(a)", "min(a)" or
+     * "max(a)"; its result attribute is named "count" or, e.g., "sum_a".  A count is
+     * an Integer, a sum is a Long (integer domains) or Double (real domains), an
+     * average is a Double and a min or max has the domain of its attribute.  With no
+     * grouping attributes ("") the whole table forms one group.
      *
-     * #usage movie.union (show)
+     * The tuples are divided into chunks that are aggregated in parallel on the pool
+     * of worker threads (see setParallelism), each into its own hash table of partial
+     * aggregates; the partial aggregates are then merged.  Groups are output in order
+     * of their first occurrence.
      *
-     * @param table2  the rhs table in the union operation
-     * @return  a table representing the union
+     * #usage transcript.groupBy ("crsCode", "count")
+     * #usage movie.groupBy ("studioName", "count", "avg(length)", "max(year)")
+     *
+     * @param attributes  the grouping attributes
+     * @param aggregates  the aggregates to compute
+     * @return  a table with one tuple per group, or null if an aggregate is invalid
      */
-    public Table union (Table table2)
+    public Table groupBy (String attributes, String ... aggregates)
     {
-        out.println ("RA> " + name + ".union (" + table2.name + ")");
-        if (! compatible (table2)) return null;
+        out.println ("RA> " + name + ".groupBy (" + attributes + "; " + String.join (", ", aggregates) + ")");
+
+        String [] g_attrs = attributes.trim ().isEmpty () ? new String [0] : attributes.trim ().split (" ");
+        int []    g_cols  = match (g_attrs);
+
+        int       n        = aggregates.length;
+        int []    fn       = new int [n];
+        int []    a_cols   = new int [n];
+        boolean[] integral = new boolean [n];
+        String [] a_names  = new String [n];
+        Class []  a_dom    = new Class [n];
+
+        for (int j = 0; j < n; j++) {
+            String spec = aggregates [j].replace (" ", "");
+            int    open = spec.indexOf ('(');
+            String func = (open < 0 ? spec : spec.substring (0, open)).toLowerCase ();
+            String arg  = (open < 0 || ! spec.endsWith (")")) ? "" : spec.substring (open + 1, spec.length () - 1);
+
+            fn [j] = Arrays.asList ("count", "sum", "avg", "min", "max").indexOf (func);
+            if (fn [j] < 0 || (fn [j] != COUNT && col (arg) < 0)) {
+                out.println ("groupBy ERROR: invalid aggregate " + aggregates [j]);
+                return null;
+            } // if
+            if (fn [j] == COUNT) {
+                a_names [j] = "count";
+                a_dom [j]   = Integer.class;
+                continue;
+            } // if
 
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable[]>();
-        int rowLength_t1 = this.tuples.size();
-        int rowLength_t2 = table2.tuples.size();
-        Comparable [] tuple;
+            a_cols [j]   = col (arg);
+            a_names [j]  = func + "_" + arg;
+            Class dom    = domain [a_cols [j]];
+            integral [j] = dom == Long.class || dom == Integer.class || dom == Short.class || dom == Byte.class;
+            if ((fn [j] == SUM || fn [j] == AVG) && ! integral [j] && dom != Double.class && dom != Float.class) {
+                out.println ("groupBy ERROR: " + func + " requires a numeric attribute, not " + arg);
+                return null;
+            } // if
+            a_dom [j] = (fn [j] == SUM) ? (integral [j] ? Long.class : Double.class)
+                      : (fn [j] == AVG) ? Double.class : dom;
+        } // for
 
-        for(int i = 0; i < rowLength_t1; i++) {
-            tuple = this.tuples.get(i);
-            rows.add(tuple);
-        }
+        int chunk   = Math.max (MIN_CHUNK, tuples.size () / (4 * parallelism));
+        int nChunks = Math.max (1, (tuples.size () + chunk - 1) / chunk);
+
+        @SuppressWarnings("unchecked")
+        Map <KeyType, GroupState> [] partial = new Map [nChunks];
+        pool ().submit (() -> IntStream.range (0, nChunks).parallel ().forEach (c -> {
+            Map <KeyType, GroupState> groups = new LinkedHashMap <> ();
+            int end = Math.min (tuples.size (), (c + 1) * chunk);
+            for (int i = c * chunk; i < end; i++) {
+                Comparable [] t = tuples.get (i);
+                groups.computeIfAbsent (keyOf (t, g_cols), k -> new GroupState (extract (t, g_attrs), n))
+                      .add (t, fn, a_cols, integral);
+            } // for
+            partial [c] = groups;
+        })).join ();
+
+        Map <KeyType, GroupState> groups = partial [0];
+        for (int c = 1; c < nChunks; c++) {
+            for (Map.Entry <KeyType, GroupState> e : partial [c].entrySet ()) {
+                GroupState g = groups.get (e.getKey ());
+                if (g == null) groups.put (e.getKey (), e.getValue ());
+                else           g.merge (e.getValue (), fn);
+            } // for
+        } // for
 
-        for(int i = 0; i < rowLength_t2; i++) {
-            tuple = table2.tuples.get(i);
-            if (!rows.contains(tuple))
-                rows.add(tuple);
-        }
+        List <Comparable []> rows = new ArrayList <> (groups.size ());
+        for (GroupState g : groups.values ()) {
+            Comparable [] t = new Comparable [g_attrs.length + n];
+            System.arraycopy (g.values, 0, t, 0, g_attrs.length);
+            for (int j = 0; j < n; j++) t [g_attrs.length + j] = g.result (j, fn, integral);
+            rows.add (t);
+        } // for
+        if (rows.isEmpty () && g_attrs.length == 0) {                    // aggregates of no tuples
+            Comparable [] t = new Comparable [n];
+            for (int j = 0; j < n; j++) t [j] = (fn [j] == COUNT) ? 0 : null;
+            rows.add (t);
+        } // if
 
-        return new Table (name + count++, attribute, domain, key, rows);
-    } // union
+        String [] newAttrs = ArrayUtil.concat (g_attrs, a_names);
+        Table result = new Table (name + count++, newAttrs, ArrayUtil.concat (extractDom (g_cols, domain), a_dom),
+                                  g_attrs.length > 0 ? g_attrs : newAttrs, rows);
+        result.plan  = "HashAggregate (" + nChunks + " partial" + (nChunks > 1 ? "s" : "") + ")";
+        return result;
+    } // groupBy
 
     /************************************************************************************
-     * Take the difference of this table and table2.  Check that the two tables are
-     * compatible.
+     * Sort the tuples in ascending order of the given attributes.
      *
-     * #usage movie.minus (show)
+     * #usage movie.orderBy ("year title")
      *
-     * @param table2  The rhs table in the minus operation
-     * @return  a table representing the difference
+     * @param attributes  the attributes to sort on (most significant first)
+     * @return  a table with the tuples in sorted order
      */
-     public Table minus (Table table2)
-     {
-        out.println ("RA> " + name + ".minus (" + table2.name + ")");
-
-        if (! compatible (table2)) return null;
-
-        List<Comparable[]> rows = new ArrayList<Comparable[]>();
-        int rowLength_t1 = this.tuples.size();
-        Comparable [] tuple;
-
-        for (int i = 0; i < rowLength_t1; i++) {
-            tuple = this.tuples.get(i);
-            if (!table2.tuples.contains(tuple))
-                rows.add(tuple);
-        }
-
-        return new Table (name + count++, attribute, domain, key, rows);
-     } // minus
+    public Table orderBy (String attributes)
+    {
+        return orderBy (attributes, "");
+    } // orderBy
 
     /************************************************************************************
-     * Join this table and table2 by performing an equijoin.  Tuples from both tables
-     * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
-     * names by append "2" to the end of any duplicate attribute name.
+     * Sort the tuples on the given attributes, each ascending ("asc", the default) or
+     * descending ("desc").  If the table has an ordered index on exactly these
+     * attributes and all are ascending, the index is read in order.  Otherwise the
+     * tuples are sorted in memory: by an LSD radix sort if all the sort attributes are
+     * Integers, otherwise by a merge sort with a comparator specialized for the
+     * attributes' domains.  The result table holds every tuple in the heap anyway; to
+     * sort more tuples than fit the memory budget, use query ().orderBy, which spills
+     * sorted runs and streams their merge.
      *
-     * #usage movie.join ("studioNo", "name", studio)
-     * #usage movieStar.join ("name == s.name", starsIn)
+     * #usage movie.orderBy ("year length", "desc asc")
      *
-     * @param attribute1  the attributes of this table to be compared (Foreign Key)
-     * @param attribute2  the attributes of table2 to be compared (Primary Key)
-     * @param table2      the rhs table in the join operation
-     * @return  a table with tuples satisfying the equality predicate
+     * @param attributes  the attributes to sort on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (missing ones are "asc")
+     * @return  a table with the tuples in sorted order, or null on an error
      */
-    public Table join (String attributes1, String attributes2, Table table2)
+    public Table orderBy (String attributes, String directions)
     {
-        out.println ("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", "
-                                               + table2.name + ")");
-
-        String [] t_attrs = attributes1.split (" ");
-        String [] u_attrs = attributes2.split (" ");
-
-        //lists of attributes' column indexes for each table
-        int [] t_attrs_index = new int[t_attrs.length];
-        int [] u_attrs_index = new int[u_attrs.length];
-
-        boolean type_check = true;
-
-        //checks for uneven attribute numbers to compare
-        if(t_attrs.length != u_attrs.length){
-            return null;
-        }
+        out.println ("RA> " + name + ".orderBy (" + attributes + ", " + directions + ")");
 
-        //generate list of column indexes from attribute parameters to compare for table1
-        for(int i = 0; i < this.attribute.length; i++){
-            for(int j = 0; j < t_attrs.length; j++){
-                if(this.attribute[i].equals(t_attrs[j])){
-                    t_attrs_index[j] = i;
-                    break;
-                }
-            }
-        }
-        //generate list of column indexes from attribute parameters to compare for table2
-        for(int i = 0; i < table2.attribute.length; i++){
-            for(int j = 0; j < u_attrs.length; j++){
-                if(table2.attribute[i].equals(u_attrs[j])){
-                    u_attrs_index[j] = i;
-                    break;
-                }
-            }
-        }
-        //ensures column domains for the keys to compare match eachother
-        for(int i=0; i < t_attrs_index.length; i++){
-            if(this.domain[i] != table2.domain[i]) {
-                type_check = false;
-                break;
-            }
-        }
+        String [] attrs = attributes.split (" ");
+        int []    cols  = match (attrs);
+        boolean [] desc = descending (directions, attrs.length);
+        if (desc == null) return null;
 
-        if(!type_check){
-            return null;
-        }
+        boolean allAsc = true, allInt = true;
+        for (int j = 0; j < cols.length; j++) {
+            allAsc &= ! desc [j];
+            allInt &= domain [cols [j]] == Integer.class;
+        } // for
 
-        List <Comparable []> rows = null;
-        rows = new ArrayList<Comparable[]>();
-        Comparable [] tuple;
-
-        //loop through both sets of rows for tables 
-        for(int i = 0; i < this.tuples.size(); i++){
-            for(int j = 0; j < table2.tuples.size(); j++){
-
-                boolean attrs_equal = false;
-                //loop through all relevant attribute fields using the generated index list for each table and compare their values 
-                for (int k = 0; k < t_attrs_index.length; k++){
-
-                    if(this.tuples.get(i)[t_attrs_index[k]].equals(table2.tuples.get(j)[u_attrs_index[k]])){
-                        out.print(this.tuples.get(i)[t_attrs_index[k]]);
-                        out.print(this.tuples.get(j)[u_attrs_index[k]]);
-
-                        attrs_equal = true;
-                    }
-                    else{
-                        attrs_equal = false;
-                        break;
-                    }
-                }
-                //concatenates and adds the tuples to our new row list if their key values are equal
-                if(attrs_equal){
-                    tuple = ArrayUtil.concat(this.tuples.get(i), table2.tuples.get(j));
-                    rows.add(tuple);
-                }
-            }
-        }
+        List <Comparable []> rows;
+        String               access;
 
-        //create new key from two existing keys
-        String [] key = ArrayUtil.concat(this.key, table2.key);
+        if (allAsc && orderedOn (attrs)) {
+            access = "IndexScan (" + attributes + ")";
+            rows   = new ArrayList <> (index.values ());
+        } else {
+            access = allInt ? "Sort (radix)" : "Sort (merge)";
+            rows   = new ArrayList <> (tuples);
+            sortRows (rows, domain, cols, desc);
+        } // if
 
-        return new Table (name + count++, ArrayUtil.concat (attribute, table2.attribute),
-                                          ArrayUtil.concat (domain, table2.domain), key, rows);
-    } // join
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // orderBy
 
     /************************************************************************************
-     * Return the column position for the given attribute name.
+     * Return the first n tuples in ascending order of the given attributes.
      *
-     * @param attr  the given attribute name
-     * @return  a column position
+     * #usage transcript.topN (20, "studId")
+     *
+     * @param n           the number of tuples wanted
+     * @param attributes  the attributes to order on (most significant first)
+     * @return  a table with the first n tuples in order
      */
-    public int col (String attr)
+    public Table topN (int n, String attributes)
     {
-        for (int i = 0; i < attribute.length; i++) {
-           if (attr.equals (attribute [i])) return i;
-        } // for
-
-        return -1;  // not found
-    } // col
+        return topN (n, attributes, "");
+    } // topN
 
     /************************************************************************************
-     * Insert a tuple to the table.
+     * Return the first n tuples in the order given by the attributes and directions
+     * (as for orderBy), without sorting the whole table.  If the table has an ordered
+     * index on exactly these attributes and all are ascending, just the first n
+     * entries of the index are read; otherwise the tuples are scanned once, keeping
+     * the best n in a bounded heap, and only those are sorted.
      *
-     * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
+     * #usage movie.topN (2, "length year", "desc asc")
      *
-     * @param tup  the array of attribute values forming the tuple
-     * @return  whether insertion was successful
+     * @param n           the number of tuples wanted
+     * @param attributes  the attributes to order on (most significant first)
+     * @param directions  "asc" or "desc" for each attribute (missing ones are "asc")
+     * @return  a table with the first n tuples in order, or null on an error
      */
-    public boolean insert (Comparable [] tup)
+    @SuppressWarnings("unchecked")
+    public Table topN (int n, String attributes, String directions)
     {
-        out.println ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
-
-        if (typeCheck (tup)) {
-            tuples.add (tup);
-            Comparable [] keyVal = new Comparable [key.length];
-            int []        cols   = match (key);
-            for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
-            index.put (new KeyType (keyVal), tup);
-            return true;
+        out.println ("RA> " + name + ".topN (" + n + ", " + attributes + ", " + directions + ")");
+
+        String []  attrs = attributes.split (" ");
+        int []     cols  = match (attrs);
+        boolean [] desc  = descending (directions, attrs.length);
+        if (desc == null) return null;
+
+        boolean allAsc = true;
+        for (boolean d : desc) allAsc &= ! d;
+
+        List <Comparable []> rows;
+        String               access;
+
+        if (allAsc && orderedOn (attrs)) {
+            access = "IndexScan (" + attributes + ", first " + n + ")";
+            if (index instanceof BpTreeMap) {
+                rows = ((BpTreeMap <KeyType, Comparable []>) index).firstValues (n);
+            } else {
+                rows = new ArrayList <> ();
+                for (Iterator <Comparable []> it = index.values ().iterator (); rows.size () < n && it.hasNext (); ) {
+                    rows.add (it.next ());
+                } // for
+            } // if
         } else {
-            return false;
+            access = "TopN (bounded heap)";
+            rows   = topN (tuples.iterator (), n, comparator (domain, cols, desc));
         } // if
-    } // insert
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // topN
 
     /************************************************************************************
-     * Get the name of the table.
+     * Return the first n tuples of the table.  This runs as a pipelined query, so
+     * no more than n tuples are read (see Query.limit).
      *
-     * @return  the table's name
+     * #usage movie.limit (10)
+     *
+     * @param n  the maximum number of tuples
+     * @return  a table with at most n tuples
      */
-    public String getName ()
+    public Table limit (int n)
     {
-        return name;
-    } // getName
+        out.println ("RA> " + name + ".limit (" + n + ")");
+        return query ().limit (n).collect ();
+    } // limit
 
     /************************************************************************************
-     * Print this table.
+     * Select the tuples satisfying the given predicate (Boolean function).
+     *
+     * #usage movie.select (t -> t[movie.col("year")].equals (1977))
+     *
+     * @param predicate  the check condition for tuples
+     * @return  a table with tuples satisfying the predicate
      */
-    public void print ()
+    public Table select (Predicate <Comparable []> predicate)
     {
-        out.println ("\n Table " + name);
-        out.print ("|-");
-        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
-        out.println ("-|");
-        out.print ("| ");
-        for (String a : attribute) out.printf ("%15s", a);
-        out.println (" |");
-        out.print ("|-");
+        out.println ("RA> " + name + ".select (" + predicate + ")");
+        return query ().select (predicate).collect ();
+    } // select
+
+    /************************************************************************************
+     * Select the tuples satisfying the given predicate, evaluating it in parallel on
+     * the pool of worker threads (see setParallelism).  The tuples are divided into
+     * chunks by a TupleSpliterator.  In ordered mode the result keeps the tuples in
+     * their original order; unordered mode lets the chunks' results be combined in
+     * any order, which is cheaper.
+     *
+     * #usage movie.parallelSelect (t -> t[movie.col("year")].equals (1977), false)
+     *
+     * @param predicate  the check condition for tuples
+     * @param ordered    whether the result must preserve the tuple order
+     * @return  a table with tuples satisfying the predicate
+     */
+    public Table parallelSelect (Predicate <Comparable []> predicate, boolean ordered)
+    {
+        out.println ("RA> " + name + ".parallelSelect (" + predicate + ", " + ordered + ")");
+
+        int chunk = Math.max (MIN_CHUNK, tuples.size () / (4 * parallelism));
+        Stream <Comparable []> stream = StreamSupport.stream (
+                new TupleSpliterator (tuples, 0, tuples.size (), chunk, ordered), true);
+        if (! ordered) stream = stream.unordered ();
+
+        Stream <Comparable []>  filtered = stream.filter (predicate);
+        List <Comparable []>    rows     = pool ().submit (() -> filtered.collect (Collectors.toList ())).join ();
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = "ParallelScan (" + (ordered ? "ordered" : "unordered") + ")";
+        return result;
+    } // parallelSelect
+
+    /************************************************************************************
+     * Select the tuples satisfying the simple comparison "attr op value".
+     *
+     * #usage movie.selectBatch ("year", ColumnKernels.Op.LT, 1980)
+     *
+     * @param attr   the attribute to compare
+     * @param op     the comparison operator (not BETWEEN)
+     * @param value  the constant to compare with
+     * @return  a table with tuples satisfying the comparison
+     */
+    public Table selectBatch (String attr, ColumnKernels.Op op, Comparable value)
+    {
+        return selectBatch (attr, op, value, value);
+    } // selectBatch
+
+    /************************************************************************************
+     * Select the tuples satisfying the simple comparison "attr op lo" (or "lo <= attr
+     * <= hi" for BETWEEN), producing the same result as the equivalent select.  For
+     * Integer, Short, Byte, Long, Double and Float columns the values are copied, a
+     * batch at a time, into a primitive array and the comparison is evaluated over the
+     * whole batch by the column kernels, using SIMD instructions when the Vector API is
+     * available.  Other domains, and constants whose type differs from the column's
+     * domain (e.g., a Double compared with an Integer column), are compared one tuple
+     * at a time, as by select (Expr).
+     *
+     * #usage movie.selectBatch ("year", ColumnKernels.Op.BETWEEN, 1977, 1985)
+     *
+     * @param attr  the attribute to compare
+     * @param op    the comparison operator
+     * @param lo    the constant to compare with (lower bound for BETWEEN)
+     * @param hi    the upper bound for BETWEEN (ignored otherwise)
+     * @return  a table with tuples satisfying the comparison, or null if the attribute
+     *          is not found
+     */
+    public Table selectBatch (String attr, ColumnKernels.Op op, Comparable lo, Comparable hi)
+    {
+        out.println ("RA> " + name + ".selectBatch (" + attr + " " + op + " " + lo
+                                   + (op == ColumnKernels.Op.BETWEEN ? " AND " + hi : "") + ")");
+
+        int                  c    = col (attr);
+        List <Comparable []> rows;
+        String               access;
+
+        if (c < 0) {
+            out.println ("selectBatch ERROR: " + name + " has no attribute " + attr);
+            return null;
+        } // if
+
+        if (batchable (c) && lo.getClass () == domain [c] && hi.getClass () == domain [c]) {
+            access = "BatchScan (" + ColumnKernels.INSTANCE.name () + ")";
+            rows   = batchScan (c, op, lo, hi);
+        } else {
+            access = "FullScan";
+            rows   = new ArrayList <> ();
+            Predicate <Comparable []> predicate = new Expr.Cmp (attr, op, lo, hi).compile (this);
+            for (Comparable [] tuple : tuples) if (predicate.test (tuple)) rows.add (tuple);
+        } // if
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // selectBatch
+
+    /************************************************************************************
+     * Select the tuples satisfying the given key predicate (key = value).  Use an index
+     * (Map) to retrieve the tuple with the given key value.  Tables whose index is not
+     * populated (e.g., results of other operators) fall back to scanning for the key.
+     *
+     * #usage movieStar.select (new KeyType ("Harrison_Ford"))
+     * #usage movie.select (new KeyType ("Star_Wars", 1977))
+     *
+     * @param keyVal  the given key value
+     * @return  a table with the tuple satisfying the key predicate
+     */
+    public Table select (KeyType keyVal)
+    {
+        out.println ("RA> " + name + ".select (" + keyVal + ")");
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        String access;
+        if (keyedOn (key)) {
+            access = "IndexLookup (" + String.join (" ", key) + ")";
+            Comparable [] tuple = index.get (keyVal);
+            if (tuple != null) rows.add (tuple);
+        } else {
+            access = "FullScan";
+            int [] cols = match (key);
+            for (Comparable [] tuple : tuples) {
+                if (keyOf (tuple, cols).equals (keyVal)) rows.add (tuple);
+            } // for
+        } // if
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // select
+
+    /************************************************************************************
+     * Select the tuples whose value for attr lies between lo and hi (both inclusive).
+     *
+     * #usage movie.selectRange ("year", 1977, 1985)
+     *
+     * @param attr  the attribute to restrict
+     * @param lo    the lower bound, or null for no lower bound
+     * @param hi    the upper bound, or null for no upper bound
+     * @return  a table with the tuples in the range
+     */
+    public Table selectRange (String attr, Comparable lo, Comparable hi)
+    {
+        return selectRange (attr, lo, hi, true, true);
+    } // selectRange
+
+    /************************************************************************************
+     * Select the tuples whose value for attr lies between lo and hi.  When the table
+     * has an ordered index (e.g., TreeMap or BpTreeMap) keyed on attr alone, only the
+     * matching portion of the index is visited, otherwise all tuples are scanned.  The
+     * result records which was done (see getPlan).  Numeric bounds of another type
+     * (e.g., an Integer bound on a Double column) are converted to the attribute's
+     * domain when they can be represented exactly.
+     *
+     * #usage movie.selectRange ("year", 1977, 1985, true, false)
+     *
+     * @param attr         the attribute to restrict
+     * @param lo           the lower bound, or null for no lower bound
+     * @param hi           the upper bound, or null for no upper bound
+     * @param loInclusive  whether a value equal to lo qualifies
+     * @param hiInclusive  whether a value equal to hi qualifies
+     * @return  a table with the tuples in the range, or null if the attribute is not
+     *          found or a bound cannot be compared with it
+     */
+    @SuppressWarnings("unchecked")
+    public Table selectRange (String attr, Comparable lo, Comparable hi,
+                              boolean loInclusive, boolean hiInclusive)
+    {
+        out.println ("RA> " + name + ".selectRange (" + attr + ", " + (loInclusive ? "[" : "(")
+                                   + lo + ", " + hi + (hiInclusive ? "]" : ")") + ")");
+
+        int c = col (attr);
+        if (c < 0) {
+            out.println ("selectRange ERROR: " + name + " has no attribute " + attr);
+            return null;
+        } // if
+        Comparable lo_ = toDomain (lo, domain [c]), hi_ = toDomain (hi, domain [c]);
+        if (lo_ == null && lo != null || hi_ == null && hi != null) {
+            out.println ("selectRange ERROR: bounds " + lo + ", " + hi + " do not fit the domain "
+                         + domain [c].getSimpleName () + " of " + attr);
+            return null;
+        } // if
+        lo = lo_;
+        hi = hi_;
+
+        List <Comparable []> rows;
+        String access;
+
+        if (orderedOn (new String [] { attr })) {
+            access = "IndexScan (" + attr + ")";
+            rows   = indexRange (lo, hi, loInclusive, hiInclusive);
+        } else {
+            access = "FullScan";
+            rows   = new ArrayList <> ();
+            for (Comparable [] tuple : tuples) {
+                Comparable v = tuple [c];
+                if (lo != null && (loInclusive ? v.compareTo (lo) < 0 : v.compareTo (lo) <= 0)) continue;
+                if (hi != null && (hiInclusive ? v.compareTo (hi) > 0 : v.compareTo (hi) >= 0)) continue;
+                rows.add (tuple);
+            } // for
+        } // if
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // selectRange
+
+    /************************************************************************************
+     * Select the tuples satisfying the given expression.  Unlike a Predicate, an
+     * expression can be inspected, so the conjuncts are used to pick an access path:
+     * equalities covering the whole key become an index lookup, a comparison on an
+     * ordered index's attribute becomes a range scan of the index, a comparison
+     * on a numeric column becomes a batch scan (see selectBatch), and an equality or
+     * IN on a dictionary-encoded column becomes a scan of its codes (see
+     * dictionaryEncode).  The remaining
+     * conjuncts (or the whole expression for a full scan) are compiled once with the
+     * column positions bound and applied to the candidate tuples.
+     *
+     * #usage movie.select (Expr.col ("title").eq ("Star_Wars").and (Expr.col ("year").eq (1977)))
+     *
+     * @param expr  the selection condition
+     * @return  a table with tuples satisfying the expression, or null if it refers to
+     *          an attribute that is not found
+     */
+    public Table select (Expr expr)
+    {
+        out.println ("RA> " + name + ".select (" + expr + ")");
+
+        List <Expr> conjuncts = new ArrayList <> ();
+        expr.conjuncts (conjuncts);
+
+        List <Comparable []> rows   = null;
+        String               access = null;
+
+        Comparable [] keyVal = new Comparable [key.length];                // equalities on the key
+        List <Expr>   keyEqs = new ArrayList <> ();
+        for (Expr e : conjuncts) {
+            if (e instanceof Expr.Cmp && ((Expr.Cmp) e).op == ColumnKernels.Op.EQ) {
+                int j = Arrays.asList (key).indexOf (((Expr.Cmp) e).attr);
+                if (j >= 0 && keyVal [j] == null && ((Expr.Cmp) e).lo.getClass () == domain [col (key [j])]) {
+                    keyVal [j] = ((Expr.Cmp) e).lo;
+                    keyEqs.add (e);
+                } // if
+            } // if
+        } // for
+
+        if (keyEqs.size () == key.length && keyedOn (key)) {
+            access = "IndexLookup (" + String.join (" ", key) + ")";
+            rows   = new ArrayList <> ();
+            Comparable [] tuple = index.get (new KeyType (keyVal));
+            if (tuple != null) rows.add (tuple);
+            conjuncts.removeAll (keyEqs);
+        } // if
+
+        for (Iterator <Expr> it = conjuncts.iterator (); rows == null && it.hasNext (); ) {
+            Expr e = it.next ();
+            if (! (e instanceof Expr.Cmp)) continue;
+            Expr.Cmp c = (Expr.Cmp) e;
+            if (col (c.attr) < 0
+                || c.lo.getClass () != domain [col (c.attr)] || c.hi.getClass () != domain [col (c.attr)]) continue;
+            if (c.op != ColumnKernels.Op.NE && orderedOn (new String [] { c.attr })) {
+                access = "IndexScan (" + c.attr + ")";
+                switch (c.op) {
+                case EQ: rows = indexRange (c.lo, c.lo, true, true);   break;
+                case LT: rows = indexRange (null, c.lo, true, false);  break;
+                case LE: rows = indexRange (null, c.lo, true, true);   break;
+                case GT: rows = indexRange (c.lo, null, false, true);  break;
+                case GE: rows = indexRange (c.lo, null, true, true);   break;
+                default: rows = indexRange (c.lo, c.hi, true, true);
+                } // switch
+                it.remove ();
+            } else if (batchable (col (c.attr))) {
+                access = "BatchScan (" + ColumnKernels.INSTANCE.name () + ")";
+                rows   = batchScan (col (c.attr), c.op, c.lo, c.hi);
+                it.remove ();
+            } // if
+        } // for
+
+        List <Comparable> vals = new ArrayList <> ();                      // equalities on a
+        for (Iterator <Expr> it = conjuncts.iterator (); rows == null && it.hasNext (); ) {   // dictionary-encoded column
+            Expr e = it.next ();
+            vals.clear ();
+            String attr = e.equalities (vals);
+            if (attr == null || ! dicts.containsKey (col (attr))) continue;
+            access = "DictScan (" + attr + ")";
+            rows   = dictScan (col (attr), vals);
+            it.remove ();
+        } // for
+
+        if (rows == null) {
+            access = "FullScan";
+            rows   = tuples;
+        } // if
+
+        if (! conjuncts.isEmpty ()) {
+            Expr residual = conjuncts.get (0);
+            for (int i = 1; i < conjuncts.size (); i++) residual = residual.and (conjuncts.get (i));
+            Predicate <Comparable []> predicate;
+            try {
+                predicate = residual.compile (this);
+            } catch (IllegalArgumentException ex) {                        // unknown attribute
+                out.println ("select ERROR: " + ex.getMessage ());
+                return null;
+            } // try
+            List <Comparable []>      filtered  = new ArrayList <> ();
+            for (Comparable [] tuple : rows) if (predicate.test (tuple)) filtered.add (tuple);
+            rows    = filtered;
+            access += " + Filter (" + residual + ")";
+        } else if (rows == tuples) {
+            rows = new ArrayList <> (tuples);
+        } // if
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = access;
+        return result;
+    } // select
+
+    /************************************************************************************
+     * Union this table and table2.  Check that the two tables are compatible.
+     * Duplicates are eliminated using a hash set: tuples are compared on the primary
+     * key when both tables share the same key, otherwise on all of their values.
+     *
+     * #usage movie.union (show)
+     *
+     * @param table2  the rhs table in the union operation
+     * @return  a table representing the union
+     */
+    public Table union (Table table2)
+    {
+        out.println ("RA> " + name + ".union (" + table2.name + ")");
+        if (! compatible (table2)) return null;
+
+        boolean byKey  = Arrays.equals (key, table2.key);
+        int []  t_cols = byKey ? match (key) : allColumns ();
+        int []  u_cols = byKey ? table2.match (table2.key) : table2.allColumns ();
+
+        List <Comparable []> rows = new ArrayList <> (tuples.size () + table2.tuples.size ());
+        Set <KeyType>        seen = new HashSet <> (2 * (tuples.size () + table2.tuples.size ()));
+
+        for (Comparable [] tuple : tuples) {
+            if (seen.add (keyOf (tuple, t_cols))) rows.add (tuple);
+        } // for
+        for (Comparable [] tuple : table2.tuples) {
+            if (seen.add (keyOf (tuple, u_cols))) rows.add (tuple);
+        } // for
+
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // union
+
+    /************************************************************************************
+     * Union this table and table2 without eliminating duplicates (bag union), i.e.,
+     * simply concatenate their tuples.  Check that the two tables are compatible.
+     *
+     * #usage movie.unionAll (show)
+     *
+     * @param table2  the rhs table in the union operation
+     * @return  a table representing the bag union
+     */
+    public Table unionAll (Table table2)
+    {
+        out.println ("RA> " + name + ".unionAll (" + table2.name + ")");
+        if (! compatible (table2)) return null;
+
+        List <Comparable []> rows = new ArrayList <> (tuples.size () + table2.tuples.size ());
+        rows.addAll (tuples);
+        rows.addAll (table2.tuples);
+
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // unionAll
+
+    /************************************************************************************
+     * Take the difference of this table and table2.  Check that the two tables are
+     * compatible.  This is evaluated as a hash anti-join: when table2's primary key
+     * covers all of its attributes its index is probed directly, otherwise a hash set
+     * of table2's tuples (compared on value) is built and probed.
+     *
+     * #usage movie.minus (show)
+     *
+     * @param table2  The rhs table in the minus operation
+     * @return  a table representing the difference
+     */
+     public Table minus (Table table2)
+     {
+        out.println ("RA> " + name + ".minus (" + table2.name + ")");
+
+        if (! compatible (table2)) return null;
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        if (table2.key.length == table2.attribute.length && table2.keyedOn (table2.key)) {
+            int [] cols = table2.match (table2.key);
+            for (Comparable [] tuple : tuples) {
+                if (table2.index.get (keyOf (tuple, cols)) == null) rows.add (tuple);
+            } // for
+        } else {
+            int []        cols = allColumns ();
+            Set <KeyType> set  = new HashSet <> (2 * table2.tuples.size ());
+            for (Comparable [] tuple : table2.tuples) set.add (keyOf (tuple, cols));
+            for (Comparable [] tuple : tuples) {
+                if (! set.contains (keyOf (tuple, cols))) rows.add (tuple);
+            } // for
+        } // if
+
+        return new Table (name + count++, attribute, domain, key, rows);
+     } // minus
+
+    /************************************************************************************
+     * Take the difference of this table and table2 by merging the two tables in
+     * order of all their attributes.  Inputs with an ordered index on a key made up
+     * of all their attributes are scanned in index order, others are sorted first.
+     * The result is ordered.  Check that the two tables are compatible.
+     *
+     * #usage movie.sortedMinus (show)
+     *
+     * @param table2  The rhs table in the minus operation
+     * @return  a table representing the difference
+     */
+     public Table sortedMinus (Table table2)
+     {
+        out.println ("RA> " + name + ".sortedMinus (" + table2.name + ")");
+
+        if (! compatible (table2)) return null;
+
+        int []               cols  = allColumns ();
+        List <Comparable []> left  = sortedOn (attribute, cols);
+        List <Comparable []> right = table2.sortedOn (table2.attribute, cols);
+        List <Comparable []> rows  = new ArrayList <> ();
+
+        int j = 0;
+        for (Comparable [] tuple : left) {
+            while (j < right.size () && compareCols (right.get (j), cols, tuple, cols) < 0) j++;
+            if (j == right.size () || compareCols (right.get (j), cols, tuple, cols) != 0) rows.add (tuple);
+        } // for
+
+        return new Table (name + count++, attribute, domain, key, rows);
+     } // sortedMinus
+
+    /************************************************************************************
+     * Join this table and table2 by performing an equijoin.  Tuples from both tables
+     * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
+     * names by append "2" to the end of any duplicate attribute name.
+     *
+     * #usage movie.join ("studioNo", "name", studio)
+     * #usage movieStar.join ("name == s.name", starsIn)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join (String attributes1, String attributes2, Table table2)
+    {
+        return join (attributes1, attributes2, table2, JoinMethod.AUTO);
+    } // join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an equijoin using the given join
+     * method.  With AUTO, a sort-merge join is used when both tables have an ordered
+     * index (e.g., TreeMap or BpTreeMap) on the join attributes, an index nested-loop
+     * join when attributes2 is table2's primary key, and otherwise a hash join (a Grace
+     * hash join if the smaller input exceeds the memory budget).
+     * Forcing a method is mainly useful for benchmarking the algorithms against each
+     * other.
+     *
+     * #usage movie.join ("title year", "title year", cinema, JoinMethod.SORT_MERGE)
+     *
+     * @param attribute1  the attributes of this table to be compared (Foreign Key)
+     * @param attribute2  the attributes of table2 to be compared (Primary Key)
+     * @param table2      the rhs table in the join operation
+     * @param method      the join algorithm to use
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join (String attributes1, String attributes2, Table table2, JoinMethod method)
+    {
+        out.println ("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", "
+                                               + table2.name + ")");
+
+        String [] t_attrs = attributes1.split (" ");
+        String [] u_attrs = attributes2.split (" ");
+
+        int [][] cols = joinCols (t_attrs, u_attrs, table2, "join");
+        if (cols == null) return null;
+        int [] t_cols = cols [0];
+        int [] u_cols = cols [1];
+
+        if (method == JoinMethod.AUTO) {
+            if (orderedOn (t_attrs) && table2.orderedOn (u_attrs)) method = JoinMethod.SORT_MERGE;
+            else if (table2.keyedOn (u_attrs))                       method = JoinMethod.INDEX;
+            else if (Math.min (estimateSize (tuples), estimateSize (table2.tuples)) > memoryBudget)
+                                                                     method = JoinMethod.GRACE_HASH;
+            else                                                     method = JoinMethod.HASH;
+        } // if
+
+        BloomFilter bloom = null;
+        if (bloomFilter && (method == JoinMethod.HASH || method == JoinMethod.GRACE_HASH)) {
+            bloom = (tuples.size () <= table2.tuples.size ()) ? bloom (tuples, t_cols)
+                                                               : bloom (table2.tuples, u_cols);
+        } // if
+
+        List <Comparable []> rows;
+        switch (method) {
+        case NESTED_LOOP:   rows = nestedLoopJoin (t_cols, u_cols, table2);                  break;
+        case SORT_MERGE:    rows = sortMergeJoin (t_attrs, t_cols, u_attrs, u_cols, table2); break;
+        case INDEX:         rows = indexJoin (t_attrs, t_cols, u_attrs, table2);             break;
+        case PARALLEL_HASH: rows = parallelHashJoin (t_cols, u_cols, table2);                break;
+        case GRACE_HASH:    rows = graceHashJoin (t_cols, u_cols, table2, bloom);            break;
+        default:            rows = hashJoin (tuples, t_cols, table2.tuples, u_cols, bloom);
+        } // switch
+        if (rows == null) return null;
+
+        //create new key from two existing keys
+        String [] key = ArrayUtil.concat (this.key, table2.key);
+
+        Table result = new Table (name + count++, ArrayUtil.concat (attribute, table2.attribute),
+                                                  ArrayUtil.concat (domain, table2.domain), key, rows);
+        result.plan  = "Join (" + method + ")" + (bloom == null ? "" : " + " + bloom);
+        return result;
+    } // join
+
+    /************************************************************************************
+     * Semi-join this table with table2: return the tuples of this table that have at
+     * least one match in table2 on attributes1 = attributes2.  Each tuple appears at
+     * most once and only this table's columns are kept, so unlike join followed by
+     * project, no concatenated tuples are built.  table2's index is probed when it is
+     * keyed on attributes2; otherwise a hash set of table2's join values is built.
+     *
+     * #usage movie.semiJoin ("title year", "movieTitle movieYear", starsIn)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the table to look for matches in
+     * @return  a table with the tuples of this table having a match in table2
+     */
+    public Table semiJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".semiJoin (" + attributes1 + ", " + attributes2 + ", "
+                                                   + table2.name + ")");
+
+        return filterJoin (attributes1, attributes2, table2, true);
+    } // semiJoin
+
+    /************************************************************************************
+     * Anti-join this table with table2: return the tuples of this table that have no
+     * match in table2 on attributes1 = attributes2 (see semiJoin).
+     *
+     * #usage movieStar.antiJoin ("name", "starName", starsIn)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the table to look for matches in
+     * @return  a table with the tuples of this table having no match in table2
+     */
+    public Table antiJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".antiJoin (" + attributes1 + ", " + attributes2 + ", "
+                                                   + table2.name + ")");
+
+        return filterJoin (attributes1, attributes2, table2, false);
+    } // antiJoin
+
+    /************************************************************************************
+     * Start a lazy, pipelined query reading this table's tuples (see Query).  The
+     * operators applied to the query are only evaluated when a sink such as collect
+     * or print runs it.
+     *
+     * #usage movie.query ().select (t -> t[movie.col("year")].equals (1977)).project ("title").print ()
+     *
+     * @return  a query scanning this table
+     */
+    public Query query ()
+    {
+        return new Query (name, attribute, domain, key, tuples::iterator, "Scan (" + name + ")", this);
+    } // query
+
+    /************************************************************************************
+     * Return the column position for the given attribute name.
+     *
+     * @param attr  the given attribute name
+     * @return  a column position
+     */
+    public int col (String attr)
+    {
+        Integer j = attrPos.get (attr);
+        return (j == null) ? -1 : j;   // -1 => not found
+    } // col
+
+    /************************************************************************************
+     * Return a getter for the given attribute's values.  The column position is
+     * resolved once, when the getter is created, rather than for every tuple.
+     *
+     * #usage Function <Comparable [], Comparable> title = movie.column ("title");
+     *        movie.select (t -> title.apply (t).equals ("Star_Wars"))
+     *
+     * @param attr  the attribute name
+     * @return  a function from a tuple to its value for attr
+     */
+    public Function <Comparable [], Comparable> column (String attr)
+    {
+        int j = position (attr);
+        return t -> t [j];
+    } // column
+
+    /************************************************************************************
+     * Return an int getter for the given attribute, which must have an Integer, Short
+     * or Byte domain.  The column position is resolved once.
+     *
+     * #usage ToIntFunction <Comparable []> year = movie.intColumn ("year");
+     *        movie.select (t -> year.applyAsInt (t) < 1980)
+     *
+     * @param attr  the attribute name
+     * @return  a function from a tuple to its int value for attr
+     */
+    public ToIntFunction <Comparable []> intColumn (String attr)
+    {
+        int j = position (attr);
+        if (domain [j] != Integer.class && domain [j] != Short.class && domain [j] != Byte.class) {
+            throw new IllegalArgumentException ("intColumn: " + attr + " has domain " + domain [j].getSimpleName ());
+        } // if
+        return t -> ((Number) t [j]).intValue ();
+    } // intColumn
+
+    /************************************************************************************
+     * Return a long getter for the given attribute, which must have an integer domain.
+     * The column position is resolved once.
+     *
+     * @param attr  the attribute name
+     * @return  a function from a tuple to its long value for attr
+     */
+    public ToLongFunction <Comparable []> longColumn (String attr)
+    {
+        int j = position (attr);
+        if (domain [j] != Long.class && domain [j] != Integer.class && domain [j] != Short.class
+                                     && domain [j] != Byte.class) {
+            throw new IllegalArgumentException ("longColumn: " + attr + " has domain " + domain [j].getSimpleName ());
+        } // if
+        return t -> ((Number) t [j]).longValue ();
+    } // longColumn
+
+    /************************************************************************************
+     * Return a double getter for the given attribute, which must have a numeric domain.
+     * The column position is resolved once.
+     *
+     * @param attr  the attribute name
+     * @return  a function from a tuple to its double value for attr
+     */
+    public ToDoubleFunction <Comparable []> doubleColumn (String attr)
+    {
+        int j = position (attr);
+        if (! Number.class.isAssignableFrom (domain [j])) {
+            throw new IllegalArgumentException ("doubleColumn: " + attr + " has domain " + domain [j].getSimpleName ());
+        } // if
+        return t -> ((Number) t [j]).doubleValue ();
+    } // doubleColumn
+
+    /************************************************************************************
+     * Insert a tuple to the table.  The insert is first recorded in the table's
+     * write-ahead log; it becomes durable when its group of log records is forced
+     * (within a few milliseconds, or at once by commit).
+     *
+     * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
+     *
+     * @param tup  the array of attribute values forming the tuple
+     * @return  whether insertion was successful
+     */
+    public boolean insert (Comparable [] tup)
+    {
+        out.println ("DML> insert into " + name + " values ( " + Arrays.toString (tup) + " )");
+
+        if (typeCheck (tup)) {
+            if (logging) {
+                try {
+                    if (wal == null) {
+                        new File (DIR).mkdirs ();
+                        attach ();
+                        wal = new WriteAheadLog (DIR + name + WAL_EXT, domain, checkpoint);
+                    } // if
+                    wal.append (tup);
+                } catch (IOException ex) {
+                    out.println ("insert: IO Exception");
+                    ex.printStackTrace ();
+                    return false;
+                } // try
+            } // if
+            add (tup);
+            return true;
+        } else {
+            return false;
+        } // if
+    } // insert
+
+    /************************************************************************************
+     * Make every insert into this table so far durable by forcing the write-ahead log
+     * to disk.  Inserts are forced in groups anyway, so this is only needed to wait
+     * for the latest ones.
+     */
+    public void commit ()
+    {
+        if (wal == null) return;
+        try {
+            wal.commit ();
+        } catch (IOException ex) {
+            out.println ("commit: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // commit
+
+    /************************************************************************************
+     * Get the name of the table.
+     *
+     * @return  the table's name
+     */
+    public String getName ()
+    {
+        return name;
+    } // getName
+
+    /************************************************************************************
+     * Get the domains of the table's attributes.
+     *
+     * @return  the table's attribute domains
+     */
+    public Class [] getDomain ()
+    {
+        return domain.clone ();
+    } // getDomain
+
+    /************************************************************************************
+     * Get the description of the physical plan that produced this table, e.g., whether
+     * a selection came from an index scan or a full scan.
+     *
+     * @return  the plan description (null for base tables)
+     */
+    public String getPlan ()
+    {
+        return plan;
+    } // getPlan
+
+    /************************************************************************************
+     * Print this table.
+     */
+    public void print ()
+    {
+        print (name, attribute, tuples);
+    } // print
+
+    /************************************************************************************
+     * Print this table's index (Map).
+     */
+    public void printIndex ()
+    {
+        out.println ("\n Index for " + name);
+        out.println ("-------------------");
+        for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
+            out.println (e.getKey () + " -> " + Arrays.toString (e.getValue ()));
+        } // for
+        out.println ("-------------------");
+    } // printIndex
+
+    /************************************************************************************
+     * Load the table with the given name into memory from its base file and the delta
+     * files written after it (see save), rebuilding the index if the table was indexed
+     * when saved.  The inserts logged in its write-ahead log after the last checkpoint
+     * are then replayed, recovering the inserts made since the last save.
+     *
+     * @param name  the name of the table to load
+     */
+    public static Table load (String name)
+    {
+        Table tab = null;
+        try {
+            ColumnarFile         cf;
+            List <Comparable []> rows;
+            long                 lsn;
+            int                  n;
+            synchronized (fileLock (name)) {
+                cf   = ColumnarFile.read (DIR + name + EXT);
+                rows = cf.tuples;
+                lsn  = cf.checkpoint;
+                for (n = cf.delta; new File (deltaPath (name, n + 1)).exists (); n++) {
+                    ColumnarFile d = ColumnarFile.read (deltaPath (name, n + 1));
+                    rows.addAll (d.tuples);
+                    lsn = Math.max (lsn, d.checkpoint);
+                    for (int j = 0; j < cf.encoding.length; j++) {
+                        if (d.encoding [j] == ColumnarFile.DICT) cf.encoding [j] = ColumnarFile.DICT;
+                    } // for
+                } // for
+            } // synchronized
+
+            tab = new Table (cf.name, cf.attribute, cf.domain, cf.key, rows, cf.mapType);
+            if (cf.indexed) tab.reindex ();
+            for (int j = 0; j < cf.encoding.length; j++) {
+                if (cf.encoding [j] == ColumnarFile.DICT) tab.encode (j);
+            } // for
+            tab.checkpoint = lsn;
+            tab.attached   = true;
+            tab.saved      = rows.size ();
+            tab.lastDelta  = n;
+            tab.merged     = cf.delta;
+
+            String log = DIR + name + WAL_EXT;
+            if (new File (log).exists ()) {
+                long last = WriteAheadLog.replay (log, tab.domain, tab.checkpoint, tab::add);
+                tab.wal   = new WriteAheadLog (log, tab.domain, last);
+            } // if
+        } catch (IOException ex) {
+            out.println ("load: IO Exception");
+            ex.printStackTrace ();
+        } // try
+        return tab;
+    } // load
+
+    /************************************************************************************
+     * Save this table.  The first save writes all the tuples to the base file
+     * store/<name>.dbf (see ColumnarFile); later saves only write the tuples inserted
+     * since, to a new delta file store/<name>.<n>.delta, so saving a large, slowly
+     * growing table costs time proportional to the change.  Once there are enough
+     * delta files, they are merged into the base file in the background.  The index is
+     * not saved; load rebuilds it.  Saving is a checkpoint: the files record the LSN of
+     * the last logged insert, and the write-ahead log is then emptied.
+     */
+    public void save ()
+    {
+        try {
+            new File (DIR).mkdirs ();
+            attach ();
+            materialize ();
+            boolean incremental = saved > 0 && new File (DIR + name + EXT).exists ();
+            if (incremental && saved == tuples.size ()) return;
+
+            long lsn = (wal == null) ? checkpoint : wal.lastLsn ();
+            if (incremental) {
+                int n = lastDelta + 1;
+                image (tuples.subList (saved, tuples.size ()), false, lsn, n).write (deltaPath (name, n));
+                lastDelta = n;
+            } else {
+                synchronized (fileLock (name)) {
+                    int n = Math.max (lastDelta, lastDeltaFile (name));
+                    image (tuples, indexed == tuples.size (), lsn, n).write (DIR + name + EXT);
+                    for (int i = 1; i <= n; i++) new File (deltaPath (name, i)).delete ();
+                    lastDelta = merged = n;
+                } // synchronized
+            } // if
+            saved      = tuples.size ();
+            checkpoint = lsn;
+            if (wal != null) wal.checkpoint (lsn);
+
+            if (lastDelta - merged >= compactDeltas) {
+                merged = lastDelta;
+                String table = name;
+                compactor ().submit (() -> {
+                    try {
+                        compact (table);
+                    } catch (IOException ex) {
+                        out.println ("compact: IO Exception");
+                        ex.printStackTrace ();
+                    } // try
+                });
+            } // if
+        } catch (IOException ex) {
+            out.println ("save: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // save
+
+    /************************************************************************************
+     * Return a columnar file image of the given rows of this table, in which the
+     * dictionary-encoded columns are saved dictionary-encoded.
+     *
+     * @param rows     the rows to save
+     * @param indexed  whether every row is in the index
+     * @param lsn      the LSN of the last log record reflected in the rows
+     * @param n        the delta number
+     * @return  the image
+     */
+    private ColumnarFile image (List <Comparable []> rows, boolean indexed, long lsn, int n)
+    {
+        ColumnarFile cf = new ColumnarFile (name, attribute, domain, key, mapType (), indexed, rows, lsn, n);
+        for (int j : dicts.keySet ()) cf.encoding [j] = ColumnarFile.DICT;
+        return cf;
+    } // image
+
+    /************************************************************************************
+     * Merge this table's delta files into its base file now (normally done in the
+     * background by save).
+     */
+    public void compact ()
+    {
+        try {
+            compact (name);
+            merged = lastDelta;
+        } catch (IOException ex) {
+            out.println ("compact: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // compact
+
+    /************************************************************************************
+     * Load the table with the given name into memory from a file written by saveObject
+     * (Java serialization of the whole table, including its index).
+     *
+     * @param name  the name of the table to load
+     */
+    public static Table loadObject (String name)
+    {
+        Table tab = null;
+        try {
+            ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + OBJ_EXT));
+            tab = (Table) ois.readObject ();
+            ois.close ();
+        } catch (IOException ex) {
+            out.println ("load: IO Exception");
+            ex.printStackTrace ();
+        } catch (ClassNotFoundException ex) {
+            out.println ("load: Class Not Found Exception");
+            ex.printStackTrace ();
+        } // try
+        return tab;
+    } // loadObject
+
+    /************************************************************************************
+     * Save this table in a file using Java serialization (the format used before
+     * ColumnarFile, kept for comparison).  As in ColumnarFile.write, the table is
+     * written to a temporary file that is then renamed, so a failure while writing
+     * leaves the previous file intact.
+     */
+    public void saveObject ()
+    {
+        try {
+            new File (DIR).mkdirs ();
+            materialize ();
+            Path tmp = Paths.get (DIR + name + OBJ_EXT + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream (tmp.toFile ());
+                 ObjectOutputStream oos = new ObjectOutputStream (new BufferedOutputStream (fos))) {
+                oos.writeObject (this);
+                oos.flush ();
+                fos.getFD ().sync ();
+            } // try
+            Files.move (tmp, Paths.get (DIR + name + OBJ_EXT), StandardCopyOption.REPLACE_EXISTING,
+                                                              StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            out.println ("save: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // saveObject
+
+    /************************************************************************************
+     * Move this table's tuples out of the heap into the page file store/<name>.pg.
+     * From then on the tuples are read (and inserts written) a page at a time through
+     * the shared buffer pool, so the table may grow beyond the heap.  The index is
+     * dropped, so selections and joins on the table scan it.
+     *
+     * #usage transcript.page ()
+     */
+    public void page ()
+    {
+        out.println ("DDL> page table " + name);
+
+        if (tuples instanceof PagedTupleList) return;
+        try {
+            new File (DIR).mkdirs ();
+            PagedTupleList paged = PagedTupleList.create (DIR + name + PAGE_EXT, bufferPool (),
+                                                          attribute, domain, key);
+            for (Comparable [] t : tuples) paged.add (t);
+            paged.flush ();
+            tuples  = paged;
+            index   = makeMap (mapType ());
+            indexed = 0;
+            dicts.clear ();
+        } catch (IOException ex) {
+            out.println ("page: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // page
+
+    /************************************************************************************
+     * Open the table with the given name from its page file (see page), leaving its
+     * tuples in the page file.
+     *
+     * @param name  the name of the table to open
+     * @return  the table, or null if it could not be opened
+     */
+    public static Table loadPaged (String name)
+    {
+        try {
+            PagedTupleList paged = PagedTupleList.open (DIR + name + PAGE_EXT, bufferPool ());
+            return new Table (name, paged.attribute, paged.domain, paged.key, paged);
+        } catch (IOException ex) {
+            out.println ("load: IO Exception");
+            ex.printStackTrace ();
+            return null;
+        } // try
+    } // loadPaged
+
+    /************************************************************************************
+     * Dictionary-encode the given String columns of this table: each column gets a
+     * dictionary of its distinct values and an array of the code of each row, and the
+     * rows share the dictionary's String instances.  This saves memory for columns with
+     * few distinct values, and equality and IN selections on them (see select (Expr))
+     * compare int codes rather than Strings.  Columns saved in dictionary-encoded form
+     * (see ColumnarFile) are encoded again when the table is loaded.
+     *
+     * #usage movie.dictionaryEncode ("genre studioName")
+     *
+     * @param attributes  the attributes of the columns to encode
+     */
+    public void dictionaryEncode (String attributes)
+    {
+        out.println ("DDL> dictionary encode " + name + " (" + attributes + ")");
+
+        if (tuples instanceof PagedTupleList) {
+            out.println ("dictionaryEncode ERROR: " + name + " is kept in pages");
+            return;
+        } // if
+        for (String attr : attributes.split (" ")) {
+            int j = col (attr);
+            if (j < 0 || domain [j] != String.class) {
+                out.println ("dictionaryEncode ERROR: " + attr + " is not a String attribute");
+                return;
+            } // if
+        } // for
+
+        materialize ();
+        for (String attr : attributes.split (" ")) encode (col (attr));
+    } // dictionaryEncode
+
+    public int numTuples() {
+        return this.tuples.size();
+    }
+
+    /************************************************************************************
+     * Set the degree of parallelism (number of worker threads) used by parallel
+     * operators such as the PARALLEL_HASH join.
+     *
+     * @param dop  the number of worker threads (at least 1)
+     */
+    public static synchronized void setParallelism (int dop)
+    {
+        if (dop < 1) throw new IllegalArgumentException ("setParallelism: dop must be positive");
+        if (pool != null && dop != parallelism) {
+            pool.shutdown ();
+            pool = null;
+        } // if
+        parallelism = dop;
+    } // setParallelism
+
+    /************************************************************************************
+     * Set the memory budget for operators that can spill to disk, such as the
+     * GRACE_HASH join.
+     *
+     * @param bytes  the memory budget in bytes
+     */
+    public static void setMemoryBudget (long bytes)
+    {
+        if (bytes < 1) throw new IllegalArgumentException ("setMemoryBudget: budget must be positive");
+        memoryBudget = bytes;
+    } // setMemoryBudget
+
+    /************************************************************************************
+     * Turn write-ahead logging of inserts on or off (e.g., for bulk loads that are
+     * saved afterwards).
+     *
+     * @param on  whether to log inserts
+     */
+    public static void setWriteAheadLog (boolean on)
+    {
+        logging = on;
+    } // setWriteAheadLog
+
+    /************************************************************************************
+     * Set the number of delta files a table may have before save merges them into its
+     * base file in the background.
+     *
+     * @param deltas  the number of delta files (at least 1)
+     */
+    public static void setCompactionThreshold (int deltas)
+    {
+        if (deltas < 1) throw new IllegalArgumentException ("setCompactionThreshold: need at least one delta");
+        compactDeltas = deltas;
+    } // setCompactionThreshold
+
+    /************************************************************************************
+     * Set the number of frames (pages of PageFile.PAGE_SIZE bytes) in the buffer pool
+     * used by tables kept in pages.  The pool is shared by all such tables, so it can
+     * only be replaced before any table is paged or loaded from pages; the old pool's
+     * changed pages are forced to disk first.
+     *
+     * @param frames  the number of frames (at least 1)
+     */
+    public static synchronized void setBufferPool (int frames)
+    {
+        if (frames < 1) throw new IllegalArgumentException ("setBufferPool: need at least one frame");
+        if (bufferPool != null) {
+            if (bufferPool.inUse ()) {
+                out.println ("setBufferPool ERROR: tables are kept in pages of the current pool");
+                return;
+            } // if
+            bufferPool.flush (null);
+        } // if
+        poolFrames = frames;
+        bufferPool = null;
+    } // setBufferPool
+
+    /************************************************************************************
+     * Turn Bloom-filter pre-filtering on or off for HASH and GRACE_HASH joins and for
+     * semi/anti joins.  When on, a Bloom filter is built on the join values of the
+     * smaller (build) side and probe-side tuples it rejects are dropped before any key
+     * is built, hashed into the hash table or spilled.  This pays off for selective
+     * joins, where most probe tuples have no match.  The filter's size, number of
+     * hashes, false-positive rate and pass count are shown in the result's plan.
+     *
+     * @param on  whether to use Bloom filters
+     */
+    public static void setBloomFilter (boolean on)
+    {
+        bloomFilter = on;
+    } // setBloomFilter
+
+    //----------------------------------------------------------------------------------
+    // Package Methods (used by Query)
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Make a new result table named after the given base name.
+     *
+     * @param base   the base name (a counter is appended)
+     * @param attr   the attribute names
+     * @param dom    the attribute domains
+     * @param _key   the primary key
+     * @param rows   the tuples
+     * @param _plan  the description of the plan that produced the tuples
+     * @return  the result table
+     */
+    static Table result (String base, String [] attr, Class [] dom, String [] _key,
+                         List <Comparable []> rows, String _plan)
+    {
+        Table result = new Table (base + count++, attr, dom, _key, rows);
+        result.plan  = _plan;
+        return result;
+    } // result
+
+    /************************************************************************************
+     * Print the given tuples as a table.
+     *
+     * @param name       the table name
+     * @param attribute  the attribute names
+     * @param rows       the tuples to print
+     */
+    static void print (String name, String [] attribute, Iterable <Comparable []> rows)
+    {
+        out.println ("\n Table " + name);
+        out.print ("|-");
         for (int i = 0; i < attribute.length; i++) out.print ("---------------");
         out.println ("-|");
-        for (Comparable [] tup : tuples) {
+        out.print ("| ");
+        for (String a : attribute) out.printf ("%15s", a);
+        out.println (" |");
+        out.print ("|-");
+        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
+        out.println ("-|");
+        for (Comparable [] tup : rows) {
             out.print ("| ");
             for (Comparable attr : tup) out.printf ("%15s", attr);
             out.println (" |");
         } // for
-        out.print ("|-");
-        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
-        out.println ("-|");
-    } // print
+        out.print ("|-");
+        for (int i = 0; i < attribute.length; i++) out.print ("---------------");
+        out.println ("-|");
+    } // print
+
+    /************************************************************************************
+     * Retrieve the tuple with the given key value from the index.
+     *
+     * @param keyVal  the key value (in the order of the key attributes)
+     * @return  the tuple, or null if there is none
+     */
+    Comparable [] get (KeyType keyVal)
+    {
+        return index.get (keyVal);
+    } // get
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * If this table is a view (see projectView), replace the view with a copy of its
+     * projected tuples, so it no longer depends on its parent.
+     */
+    private void materialize ()
+    {
+        if (tuples instanceof ProjectedList) tuples = new ArrayList <> (tuples);
+    } // materialize
+
+    /************************************************************************************
+     * Merge the delta files of the table with the given name into its base file.  The
+     * new base file records the last delta merged and replaces the old one atomically
+     * before the merged delta files are deleted, so a crash at any point loses nothing.
+     *
+     * @param name  the name of the table
+     */
+    private static void compact (String name)
+            throws IOException
+    {
+        synchronized (fileLock (name)) {
+            ColumnarFile         base = ColumnarFile.read (DIR + name + EXT);
+            List <Comparable []> rows     = base.tuples;
+            long                 lsn      = base.checkpoint;
+            byte []              encoding = base.encoding;
+            int                  n;
+            for (n = base.delta; new File (deltaPath (name, n + 1)).exists (); n++) {
+                ColumnarFile d = ColumnarFile.read (deltaPath (name, n + 1));
+                rows.addAll (d.tuples);
+                lsn = Math.max (lsn, d.checkpoint);
+                for (int j = 0; j < encoding.length; j++) encoding [j] = (byte) Math.max (encoding [j], d.encoding [j]);
+            } // for
+            if (n == base.delta) return;
+
+            ColumnarFile image = new ColumnarFile (base.name, base.attribute, base.domain, base.key,
+                                                   base.mapType, base.indexed, rows, lsn, n);
+            System.arraycopy (encoding, 0, image.encoding, 0, encoding.length);
+            image.write (DIR + name + EXT);
+            for (int i = base.delta + 1; i <= n; i++) new File (deltaPath (name, i)).delete ();
+        } // synchronized
+    } // compact
+
+    /************************************************************************************
+     * Before a new table first logs or saves anything, raise its checkpoint above every
+     * LSN used by an earlier table of the same name: the checkpoints of the base and
+     * delta files, and the records in the write-ahead log.  The new table then appends
+     * to that log rather than truncating it, its records are not skipped by load as
+     * already saved, and once it saves, the earlier records are superseded.
+     */
+    private void attach ()
+            throws IOException
+    {
+        if (attached) return;
+        long lsn = checkpoint;
+        synchronized (fileLock (name)) {
+            if (new File (DIR + name + EXT).exists ()) {
+                lsn = Math.max (lsn, ColumnarFile.read (DIR + name + EXT, false).checkpoint);
+            } // if
+            for (int i = 1, n = lastDeltaFile (name); i <= n; i++) {
+                if (! new File (deltaPath (name, i)).exists ()) continue;
+                lsn = Math.max (lsn, ColumnarFile.read (deltaPath (name, i), false).checkpoint);
+            } // for
+        } // synchronized
+        String log = DIR + name + WAL_EXT;
+        if (new File (log).exists ()) lsn = WriteAheadLog.replay (log, domain, lsn, null);
+        checkpoint = lsn;
+        attached   = true;
+    } // attach
+
+    /************************************************************************************
+     * Return the path of the n-th delta file of the table with the given name.
+     *
+     * @param name  the name of the table
+     * @param n     the delta number
+     * @return  the path
+     */
+    private static String deltaPath (String name, int n)
+    {
+        return DIR + name + "." + n + DELTA_EXT;
+    } // deltaPath
+
+    /************************************************************************************
+     * Return the highest number of any delta file of the table with the given name
+     * (0 if there are none), e.g., stale ones left by an earlier table of that name.
+     *
+     * @param name  the name of the table
+     * @return  the highest delta number
+     */
+    private static int lastDeltaFile (String name)
+    {
+        int       last  = 0;
+        String [] files = new File (DIR).list ();
+        if (files == null) return last;
+        for (String f : files) {
+            if (! f.startsWith (name + ".") || ! f.endsWith (DELTA_EXT)) continue;
+            String n = f.substring (name.length () + 1, f.length () - DELTA_EXT.length ());
+            if (n.matches ("\\d+")) last = Math.max (last, Integer.parseInt (n));
+        } // for
+        return last;
+    } // lastDeltaFile
+
+    /************************************************************************************
+     * Return the lock serializing the rewriting and loading of the files of the table
+     * with the given name.
+     *
+     * @param name  the name of the table
+     * @return  the lock
+     */
+    private static Object fileLock (String name)
+    {
+        return fileLocks.computeIfAbsent (name, k -> new Object ());
+    } // fileLock
+
+    /************************************************************************************
+     * Add tuple t to the tuples and the index (unless the tuples are kept in pages),
+     * without logging it.
+     *
+     * @param t  the tuple to add
+     */
+    private void add (Comparable [] t)
+    {
+        materialize ();
+        tuples.add (t);
+        if (tuples instanceof PagedTupleList) return;
+        for (Map.Entry <Integer, ColumnDictionary> e : dicts.entrySet ()) {
+            t [e.getKey ()] = e.getValue ().add ((String) t [e.getKey ()]);
+        } // for
+        KeyType k = keyOf (t, match (key));
+        if (index.get (k) == null) indexed++;
+        index.put (k, t);
+    } // add
+
+    /************************************************************************************
+     * Build the dictionary of the j-th column (a String column), replacing the rows'
+     * values with the dictionary's instances.
+     *
+     * @param j  the column position
+     */
+    private void encode (int j)
+    {
+        if (dicts.containsKey (j)) return;
+        ColumnDictionary dict = new ColumnDictionary ();
+        for (Comparable [] t : tuples) t [j] = dict.add ((String) t [j]);
+        dicts.put (j, dict);
+    } // encode
+
+    /************************************************************************************
+     * Retrieve the tuples whose value in the dictionary-encoded j-th column is one of
+     * the given values, comparing codes only.
+     *
+     * @param j     the column position
+     * @param vals  the values
+     * @return  the matching tuples
+     */
+    private List <Comparable []> dictScan (int j, List <Comparable> vals)
+    {
+        ColumnDictionary dict = dicts.get (j);
+        boolean []       want = new boolean [dict.size ()];
+        boolean          any  = false;
+        for (Comparable v : vals) {
+            int c = dict.code (v);
+            if (c >= 0) want [c] = any = true;
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        if (! any) return rows;
+        int [] codes = dict.codes ();
+        for (int i = 0, n = dict.numRows (); i < n; i++) {
+            if (want [codes [i]]) rows.add (tuples.get (i));
+        } // for
+        return rows;
+    } // dictScan
+
+    /************************************************************************************
+     * Enter every tuple into the (empty) index, e.g., after loading the tuples.
+     */
+    private void reindex ()
+    {
+        int [] cols = match (key);
+        for (Comparable [] t : tuples) {
+            KeyType k = keyOf (t, cols);
+            if (index.get (k) == null) indexed++;
+            index.put (k, t);
+        } // for
+    } // reindex
+
+    /************************************************************************************
+     * Return the type of map used for the index.
+     *
+     * @return  the map type
+     */
+    private MapType mapType ()
+    {
+        if (index instanceof BpTreeMap)  return MapType.BPTREE_MAP;
+        if (index instanceof LinHashMap) return MapType.LINHASH_MAP;
+        if (index instanceof ExtHashMap) return MapType.EXTHASH_MAP;
+        return MapType.TREE_MAP;
+    } // mapType
+
+    /************************************************************************************
+     * Determine whether the two tables (this and table2) are compatible, i.e., have
+     * the same number of attributes each with the same corresponding domain.
+     *
+     * @param table2  the rhs table
+     * @return  whether the two tables are compatible
+     */
+    private boolean compatible (Table table2)
+    {
+        if (domain.length != table2.domain.length) {
+            out.println ("compatible ERROR: table have different arity");
+            return false;
+        } // if
+        for (int j = 0; j < domain.length; j++) {
+            if (domain [j] != table2.domain [j]) {
+                out.println ("compatible ERROR: tables disagree on domain " + j);
+                return false;
+            } // if
+        } // for
+        return true;
+    } // compatible
+
+    /************************************************************************************
+     * Match the column and attribute names to determine the domains.
+     *
+     * @param column  the array of column names
+     * @return  an array of column index positions
+     */
+    private int [] match (String [] column)
+    {
+        int [] colPos = new int [column.length];
+
+        for (int j = 0; j < column.length; j++) {
+            Integer k = attrPos.get (column [j]);
+            if (k != null) {
+                colPos [j] = k;
+            } else {
+                out.println ("match: domain not found for " + column [j]);
+            } // if
+        } // for
+
+        return colPos;
+    } // match
+
+    /************************************************************************************
+     * Return the column position for the given attribute name, which must exist.
+     *
+     * @param attr  the attribute name
+     * @return  the column position
+     */
+    private int position (String attr)
+    {
+        Integer j = attrPos.get (attr);
+        if (j == null) throw new IllegalArgumentException ("Table " + name + " has no attribute " + attr);
+        return j;
+    } // position
+
+    /************************************************************************************
+     * Map each attribute name to its column position (the first, if a name repeats),
+     * so lookups by name are O(1).  Also used by Query.
+     *
+     * @param attribute  the attribute names
+     * @return  the map from attribute name to column position
+     */
+    static Map <String, Integer> positions (String [] attribute)
+    {
+        Map <String, Integer> pos = new HashMap <> (2 * attribute.length);
+        for (int j = 0; j < attribute.length; j++) pos.putIfAbsent (attribute [j], j);
+        return pos;
+    } // positions
+
+    /************************************************************************************
+     * Return the positions of all of this table's columns, i.e., 0 until the arity.
+     *
+     * @return  an array of all column positions
+     */
+    private int [] allColumns ()
+    {
+        int [] cols = new int [attribute.length];
+        for (int j = 0; j < cols.length; j++) cols [j] = j;
+        return cols;
+    } // allColumns
+
+    /************************************************************************************
+     * Extract the attributes specified by the column array from tuple t.
+     *
+     * @param t       the tuple to extract from
+     * @param column  the array of column names
+     * @return  a smaller tuple extracted from tuple t 
+     */
+    private Comparable [] extract (Comparable [] t, String [] column)
+    {
+        Comparable [] tup = new Comparable [column.length];
+        int [] colPos = match (column);
+        for (int j = 0; j < column.length; j++) tup [j] = t [colPos [j]];
+        return tup;
+    } // extract
+
+    /************************************************************************************
+     * Check the size of the tuple (number of elements in list) as well as the type of
+     * each value to ensure it is from the right domain. 
+     *
+     * @param t  the tuple as a list of attribute values
+     * @return  whether the tuple has the right size and values that comply
+     *          with the given domains
+     */
+    private boolean typeCheck (Comparable [] t)
+    {
+        //check if the tuple has the correct amount of attributes
+        if (t.length != attribute.length)
+            return false;
+
+        //checks if each attribute is of the correct class
+        for (int i = 0; i < t.length; i++) {
+            if (!(domain[i].isInstance(t[i])))
+                return false;
+        }
+
+        return true;
+    } // typeCheck
+
+    /************************************************************************************
+     * Make an empty map of the given type for use as an index.
+     *
+     * @param mapType  the map implementation to create
+     * @return  an empty index map
+     */
+    private static Map <KeyType, Comparable []> makeMap (MapType mapType)
+    {
+        switch (mapType) {
+        case BPTREE_MAP:  return new BpTreeMap <> (KeyType.class, Comparable [].class);
+        case LINHASH_MAP: return new LinHashMap <> (KeyType.class, Comparable [].class, 4);
+        case EXTHASH_MAP: return new ExtHashMap <> (KeyType.class, Comparable [].class, 4);
+        default:          return new TreeMap <> ();
+        } // switch
+    } // makeMap
+
+    /************************************************************************************
+     * Find the classes in the "java.lang" package with given names.
+     *
+     * @param className  the array of class name (e.g., {"Integer", "String"})
+     * @return  an array of Java classes
+     */
+    private static Class [] findClass (String [] className)
+    {
+        Class [] classArray = new Class [className.length];
+
+        for (int i = 0; i < className.length; i++) {
+            try {
+                classArray [i] = Class.forName ("java.lang." + className [i]);
+            } catch (ClassNotFoundException ex) {
+                out.println ("findClass: " + ex);
+            } // try
+        } // for
+
+        return classArray;
+    } // findClass
+
+    /************************************************************************************
+     * Extract the corresponding domains.
+     *
+     * @param colPos the column positions to extract.
+     * @param group  where to extract from
+     * @return  the extracted domains
+     */
+    private Class [] extractDom (int [] colPos, Class [] group)
+    {
+        Class [] obj = new Class [colPos.length];
+
+        for (int j = 0; j < colPos.length; j++) {
+            obj [j] = group [colPos [j]];
+        } // for
+
+        return obj;
+    } // extractDom
+
+    /************************************************************************************
+     * Perform a nested-loop join comparing every pair of tuples from the two tables.
+     *
+     * @param t_cols  the join column positions in this table
+     * @param u_cols  the join column positions in table2
+     * @param table2  the rhs table in the join operation
+     * @return  the list of joined tuples
+     */
+    private List <Comparable []> nestedLoopJoin (int [] t_cols, int [] u_cols, Table table2)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : tuples) {
+            for (Comparable [] u : table2.tuples) {
+                if (compareCols (t, t_cols, u, u_cols) == 0) rows.add (ArrayUtil.concat (t, u));
+            } // for
+        } // for
+        return rows;
+    } // nestedLoopJoin
+
+    /************************************************************************************
+     * Perform a sort-merge join.  Each input is scanned in join-key order, taken from
+     * its ordered index when one exists on the join attributes and otherwise from an
+     * in-memory sort.  Runs of equal keys on both sides produce their cross product.
+     * The result comes out ordered on the join attributes.
+     *
+     * @param t_attrs  the join attributes of this table
+     * @param t_cols   the join column positions in this table
+     * @param u_attrs  the join attributes of table2
+     * @param u_cols   the join column positions in table2
+     * @param table2   the rhs table in the join operation
+     * @return  the list of joined tuples
+     */
+    private List <Comparable []> sortMergeJoin (String [] t_attrs, int [] t_cols,
+                                                String [] u_attrs, int [] u_cols, Table table2)
+    {
+        List <Comparable []> left  = sortedOn (t_attrs, t_cols);
+        List <Comparable []> right = table2.sortedOn (u_attrs, u_cols);
+        List <Comparable []> rows  = new ArrayList <> ();
+
+        int i = 0, j = 0;
+        while (i < left.size () && j < right.size ()) {
+            int cmp = compareCols (left.get (i), t_cols, right.get (j), u_cols);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                int iEnd = i + 1, jEnd = j + 1;
+                while (iEnd < left.size () && compareCols (left.get (iEnd), t_cols, left.get (i), t_cols) == 0) iEnd++;
+                while (jEnd < right.size () && compareCols (right.get (jEnd), u_cols, right.get (j), u_cols) == 0) jEnd++;
+                for (int ii = i; ii < iEnd; ii++) {
+                    for (int jj = j; jj < jEnd; jj++) rows.add (ArrayUtil.concat (left.get (ii), right.get (jj)));
+                } // for
+                i = iEnd;
+                j = jEnd;
+            } // if
+        } // while
+
+        return rows;
+    } // sortMergeJoin
+
+    /************************************************************************************
+     * Perform an index nested-loop join.  For each tuple in this table, its join
+     * columns (rearranged into table2's key order) form a key that is looked up in
+     * table2's index, whatever Map implementation that index uses.  Requires that
+     * u_attrs be table2's (possibly composite) primary key and that the index hold
+     * every tuple (see keyedOn).
+     *
+     * @param t_attrs  the join attributes of this table
+     * @param t_cols   the join column positions in this table
+     * @param u_attrs  the join attributes of table2
+     * @param table2   the rhs table in the join operation
+     * @return  the list of joined tuples, or null if table2 cannot be probed on u_attrs
+     */
+    private List <Comparable []> indexJoin (String [] t_attrs, int [] t_cols, String [] u_attrs,
+                                            Table table2)
+    {
+        if (! table2.keyedOn (u_attrs)) {
+            out.println ("join ERROR: " + Arrays.toString (u_attrs) + " is not the indexed key of "
+                                        + table2.name);
+            return null;
+        } // if
+
+        int [] probeCols = new int [table2.key.length];
+        List <String> u_list = Arrays.asList (u_attrs);
+        for (int k = 0; k < probeCols.length; k++) probeCols [k] = t_cols [u_list.indexOf (table2.key [k])];
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : tuples) {
+            Comparable [] u = table2.index.get (keyOf (t, probeCols));
+            if (u != null) rows.add (ArrayUtil.concat (t, u));
+        } // for
+
+        return rows;
+    } // indexJoin
+
+    /************************************************************************************
+     * Return this table's tuples ordered on the given attributes, reading them from
+     * the ordered index when it covers exactly those attributes and sorting a copy
+     * of the tuples otherwise.
+     *
+     * @param attrs  the attributes to order on
+     * @param cols   the column positions of attrs
+     * @return  the tuples in order
+     */
+    private List <Comparable []> sortedOn (String [] attrs, int [] cols)
+    {
+        if (orderedOn (attrs)) return new ArrayList <> (index.values ());
+
+        List <Comparable []> sorted = new ArrayList <> (tuples);
+        sorted.sort ((a, b) -> compareCols (a, cols, b, cols));
+        return sorted;
+    } // sortedOn
+
+    /************************************************************************************
+     * Determine whether this table has an up-to-date ordered index (SortedMap) whose
+     * key is exactly the given attributes and that holds every tuple (no duplicate
+     * keys), so that scanning the index yields the tuples in attribute order.
+     *
+     * @param attrs  the attributes to check
+     * @return  whether the index provides an ordered scan on attrs
+     */
+    private boolean orderedOn (String [] attrs)
+    {
+        return index instanceof SortedMap && Arrays.equals (attrs, key) && indexed == tuples.size ();
+    } // orderedOn
+
+    /************************************************************************************
+     * Determine whether this table has an up-to-date index whose key consists of
+     * exactly the given attributes (in any order) and that holds every tuple (no
+     * duplicate keys), so the index can be probed for them.
+     *
+     * @param attrs  the attributes to check
+     * @return  whether the index can be probed on attrs
+     */
+    boolean keyedOn (String [] attrs)
+    {
+        return attrs.length == key.length && Arrays.asList (attrs).containsAll (Arrays.asList (key))
+                                          && indexed == tuples.size ();
+    } // keyedOn
+
+    /************************************************************************************
+     * Retrieve the tuples whose key lies between lo and hi by visiting only that portion
+     * of the index, in key order.  Requires an ordered index on a single attribute (see
+     * orderedOn).
+     *
+     * @param lo           the lower bound, or null for no lower bound
+     * @param hi           the upper bound, or null for no upper bound
+     * @param loInclusive  whether a value equal to lo qualifies
+     * @param hiInclusive  whether a value equal to hi qualifies
+     * @return  the tuples in the range
+     */
+    @SuppressWarnings("unchecked")
+    private List <Comparable []> indexRange (Comparable lo, Comparable hi,
+                                             boolean loInclusive, boolean hiInclusive)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        if (lo != null && hi != null && lo.compareTo (hi) > 0) return rows;
+
+        SortedMap <KeyType, Comparable []> map   = (SortedMap <KeyType, Comparable []>) index;
+        KeyType                            loKey = (lo == null) ? null : new KeyType (lo);
+        KeyType                            hiKey = (hi == null) ? null : new KeyType (hi);
+        if (map instanceof BpTreeMap) {
+            return ((BpTreeMap <KeyType, Comparable []>) map).values (loKey, loInclusive, hiKey, hiInclusive);
+        } // if
+        SortedMap <KeyType, Comparable []> sub   = (loKey == null) ? ((hiKey == null) ? map : map.headMap (hiKey))
+                                                 : ((hiKey == null) ? map.tailMap (loKey) : map.subMap (loKey, hiKey));
+
+        for (Map.Entry <KeyType, Comparable []> e : sub.entrySet ()) {
+            if (! loInclusive && e.getKey ().equals (loKey)) continue;
+            rows.add (e.getValue ());
+        } // for
+        if (hiInclusive && hiKey != null && (loInclusive || ! hiKey.equals (loKey))) {
+            Comparable [] tuple = map.get (hiKey);
+            if (tuple != null) rows.add (tuple);
+        } // if
+        return rows;
+    } // indexRange
+
+    /************************************************************************************
+     * Determine whether the column at position c can be filtered by the column kernels,
+     * i.e., whether its domain is an integral or real type (reals are filtered as
+     * order-preserving longs, see ColumnKernels.orderedBits).
+     *
+     * @param c  the column position
+     * @return  whether batch scans apply to the column
+     */
+    private boolean batchable (int c)
+    {
+        Class dom = domain [c];
+        return dom == Integer.class || dom == Short.class || dom == Byte.class || dom == Long.class
+            || dom == Double.class  || dom == Float.class;
+    } // batchable
+
+    /************************************************************************************
+     * Retrieve the tuples satisfying "col c op lo" (or "lo <= col c <= hi" for BETWEEN)
+     * by copying the column into primitive arrays, a batch at a time, and filtering
+     * each batch with the column kernels.  Requires a batchable column.
+     *
+     * @param c   the column position
+     * @param op  the comparison operator
+     * @param lo  the constant to compare with (lower bound for BETWEEN)
+     * @param hi  the upper bound for BETWEEN (ignored otherwise)
+     * @return  the qualifying tuples, in table order
+     */
+    private List <Comparable []> batchScan (int c, ColumnKernels.Op op, Comparable lo, Comparable hi)
+    {
+        ColumnKernels        kernels = ColumnKernels.INSTANCE;
+        Class                dom     = domain [c];
+        boolean              ints    = dom == Integer.class || dom == Short.class || dom == Byte.class;
+        boolean              reals   = dom == Double.class  || dom == Float.class;
+        int []               iBatch  = ints ? new int [BATCH] : null;
+        long []              lBatch  = ints ? null : new long [BATCH];
+        long                 a       = ints ? 0 : reals ? ColumnKernels.orderedBits (((Number) lo).doubleValue ())
+                                                        : ((Number) lo).longValue ();
+        long                 b       = ints ? 0 : reals ? ColumnKernels.orderedBits (((Number) hi).doubleValue ())
+                                                        : ((Number) hi).longValue ();
+        long []              bits    = new long [BATCH / 64];
+        List <Comparable []> rows    = new ArrayList <> ();
+
+        for (int start = 0; start < tuples.size (); start += BATCH) {
+            int n = Math.min (BATCH, tuples.size () - start);
+            if (ints) {
+                for (int i = 0; i < n; i++) iBatch [i] = ((Number) tuples.get (start + i) [c]).intValue ();
+                kernels.filter (iBatch, n, op, ((Number) lo).intValue (), ((Number) hi).intValue (), bits);
+            } else if (reals) {
+                for (int i = 0; i < n; i++) {
+                    lBatch [i] = ColumnKernels.orderedBits (((Number) tuples.get (start + i) [c]).doubleValue ());
+                } // for
+                kernels.filter (lBatch, n, op, a, b, bits);
+            } else {
+                for (int i = 0; i < n; i++) lBatch [i] = ((Number) tuples.get (start + i) [c]).longValue ();
+                kernels.filter (lBatch, n, op, a, b, bits);
+            } // if
+            for (int w = 0; w < (n + 63) >>> 6; w++) {
+                for (long word = bits [w]; word != 0; word &= word - 1) {
+                    rows.add (tuples.get (start + (w << 6) + Long.numberOfTrailingZeros (word)));
+                } // for
+            } // for
+        } // for
+        return rows;
+    } // batchScan
 
     /************************************************************************************
-     * Print this table's index (Map).
+     * Compare the given columns of tuple t with the given columns of tuple u.
+     *
+     * @param t       the first tuple
+     * @param t_cols  the column positions in t
+     * @param u       the second tuple
+     * @param u_cols  the column positions in u
+     * @return  negative, zero or positive as t's columns are less than, equal to or
+     *          greater than u's columns
      */
-    public void printIndex ()
+    @SuppressWarnings("unchecked")
+    private static int compareCols (Comparable [] t, int [] t_cols, Comparable [] u, int [] u_cols)
     {
-        out.println ("\n Index for " + name);
-        out.println ("-------------------");
-        for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) {
-            out.println (e.getKey () + " -> " + Arrays.toString (e.getValue ()));
+        for (int k = 0; k < t_cols.length; k++) {
+            int cmp = t [t_cols [k]].compareTo (u [u_cols [k]]);
+            if (cmp != 0) return cmp;
         } // for
-        out.println ("-------------------");
-    } // printIndex
+        return 0;
+    } // compareCols
 
     /************************************************************************************
-     * Load the table with the given name into memory. 
+     * Match the join attributes of this table and table2, checking that the lists
+     * have the same length and that paired attributes agree on domain.
      *
-     * @param name  the name of the table to load
+     * @param t_attrs  the join attributes of this table
+     * @param u_attrs  the join attributes of table2
+     * @param table2   the other table
+     * @param op       the operator name for error messages
+     * @return  the join column positions {t_cols, u_cols}, or null if they do not match
      */
-    public static Table load (String name)
+    private int [][] joinCols (String [] t_attrs, String [] u_attrs, Table table2, String op)
     {
-        Table tab = null;
+        //checks for uneven attribute numbers to compare
+        if (t_attrs.length != u_attrs.length) {
+            out.println (op + " ERROR: attribute lists have different lengths");
+            return null;
+        } // if
+
+        //lists of attributes' column indexes for each table
+        int [] t_cols = match (t_attrs);
+        int [] u_cols = table2.match (u_attrs);
+
+        //ensures column domains for the keys to compare match eachother
+        for (int i = 0; i < t_cols.length; i++) {
+            if (domain [t_cols [i]] != table2.domain [u_cols [i]]) {
+                out.println (op + " ERROR: " + t_attrs [i] + " and " + u_attrs [i] + " disagree on domain");
+                return null;
+            } // if
+        } // for
+
+        return new int [][] { t_cols, u_cols };
+    } // joinCols
+
+    /************************************************************************************
+     * Keep the tuples of this table that have (keep = true) or do not have (keep =
+     * false) a match in table2.  Matches are found by probing table2's index when it is
+     * keyed on attributes2 and otherwise in a hash set of table2's join values; with
+     * Bloom filters on, tuples the filter rejects skip the probe.
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the table to look for matches in
+     * @param keep         whether to keep the tuples with a match (semi) or without (anti)
+     * @return  the result table
+     */
+    private Table filterJoin (String attributes1, String attributes2, Table table2, boolean keep)
+    {
+        String [] t_attrs = attributes1.split (" ");
+        String [] u_attrs = attributes2.split (" ");
+
+        int [][] cols = joinCols (t_attrs, u_attrs, table2, keep ? "semiJoin" : "antiJoin");
+        if (cols == null) return null;
+        int [] t_cols = cols [0];
+        int [] u_cols = cols [1];
+
+        BloomFilter bloom = bloomFilter ? bloom (table2.tuples, u_cols) : null;
+
+        Predicate <Comparable []> found;
+        String                    how;
+        if (table2.keyedOn (u_attrs)) {
+            int [] probeCols = new int [table2.key.length];
+            List <String> u_list = Arrays.asList (u_attrs);
+            for (int k = 0; k < probeCols.length; k++) probeCols [k] = t_cols [u_list.indexOf (table2.key [k])];
+            found = t -> table2.index.get (keyOf (t, probeCols)) != null;
+            how   = "index";
+        } else {
+            Set <KeyType> values = new HashSet <> (2 * table2.tuples.size () + 1);
+            for (Comparable [] u : table2.tuples) values.add (keyOf (u, u_cols));
+            found = t -> values.contains (keyOf (t, t_cols));
+            how   = "hash";
+        } // if
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t : tuples) {
+            boolean match = (bloom == null || bloom.mightContain (hashCols (t, t_cols))) && found.test (t);
+            if (match == keep) rows.add (t);
+        } // for
+
+        Table result = new Table (name + count++, attribute, domain, key, rows);
+        result.plan  = (keep ? "SemiJoin (" : "AntiJoin (") + how + ")"
+                     + (bloom == null ? "" : " + " + bloom);
+        return result;
+    } // filterJoin
+
+    /************************************************************************************
+     * Build a Bloom filter on the given columns of the given tuples, sized for the
+     * BLOOM_FPP false-positive rate.
+     *
+     * @param rows  the tuples (the build side)
+     * @param cols  the join column positions
+     * @return  the Bloom filter
+     */
+    private static BloomFilter bloom (List <Comparable []> rows, int [] cols)
+    {
+        BloomFilter bloom = new BloomFilter (rows.size (), BLOOM_FPP);
+        for (Comparable [] t : rows) bloom.add (hashCols (t, cols));
+        return bloom;
+    } // bloom
+
+    /************************************************************************************
+     * Perform an in-memory hash join of the tuples ts and us.  A hash table is built on
+     * the smaller input, keyed on its join columns, and the larger input is streamed
+     * through it.  Result tuples are always laid out as a tuple of ts followed by a
+     * tuple of us.  Probe tuples rejected by the Bloom filter (if any) are skipped
+     * before their key is built.  (Also used by EHMTable.)
+     *
+     * @param ts      the lhs tuples
+     * @param t_cols  the join column positions in ts
+     * @param us      the rhs tuples
+     * @param u_cols  the join column positions in us
+     * @param bloom   the Bloom filter on the smaller input's join values, or null
+     * @return  the list of joined tuples
+     */
+    static List <Comparable []> hashJoin (List <Comparable []> ts, int [] t_cols,
+                                          List <Comparable []> us, int [] u_cols, BloomFilter bloom)
+    {
+        boolean buildLeft = ts.size () <= us.size ();
+        List <Comparable []> build  = buildLeft ? ts : us;
+        List <Comparable []> probe  = buildLeft ? us : ts;
+        int []               b_cols = buildLeft ? t_cols : u_cols;
+        int []               p_cols = buildLeft ? u_cols : t_cols;
+
+        Map <KeyType, List <Comparable []>> table = new HashMap <> (2 * build.size () + 1);
+        for (Comparable [] b : build) {
+            table.computeIfAbsent (keyOf (b, b_cols), k -> new ArrayList <> (1)).add (b);
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] p : probe) {
+            if (bloom != null && ! bloom.mightContain (hashCols (p, p_cols))) continue;
+            List <Comparable []> matches = table.get (keyOf (p, p_cols));
+            if (matches == null) continue;
+            for (Comparable [] b : matches) {
+                rows.add (buildLeft ? ArrayUtil.concat (b, p) : ArrayUtil.concat (p, b));
+            } // for
+        } // for
+
+        return rows;
+    } // hashJoin
+
+    /************************************************************************************
+     * Perform a parallel radix-partitioned hash join.  Both inputs are split into
+     * chunks that are partitioned in parallel on the high bits of the join-key hash,
+     * choosing enough partitions that each build partition's hash table fits in
+     * cache.  Matching partition pairs are then joined in parallel, each into its
+     * own output list, and the lists are concatenated at the end (no shared lock).
+     *
+     * @param t_cols  the join column positions in this table
+     * @param u_cols  the join column positions in table2
+     * @param table2  the rhs table in the join operation
+     * @return  the list of joined tuples
+     */
+    @SuppressWarnings("unchecked")
+    private List <Comparable []> parallelHashJoin (int [] t_cols, int [] u_cols, Table table2)
+    {
+        boolean buildLeft = tuples.size () <= table2.tuples.size ();
+        List <Comparable []> build  = buildLeft ? tuples : table2.tuples;
+        List <Comparable []> probe  = buildLeft ? table2.tuples : tuples;
+        int []               b_cols = buildLeft ? t_cols : u_cols;
+        int []               p_cols = buildLeft ? u_cols : t_cols;
+
+        ForkJoinPool fjp  = pool ();
+        int          dop  = fjp.getParallelism ();
+        int          bits = 1;
+        while ((1 << bits) < 2 * dop || (build.size () >> bits) > PARTITION_TUPLES) bits++;
+        int          nParts = 1 << bits;
+
+        List <Comparable []> [][] bParts = partition (fjp, build, b_cols, bits, dop);
+        List <Comparable []> [][] pParts = partition (fjp, probe, p_cols, bits, dop);
+
+        List <Comparable []> [] results = new List [nParts];
+        fjp.submit (() -> IntStream.range (0, nParts).parallel ().forEach (p -> {
+            Map <KeyType, List <Comparable []>> table = new HashMap <> ();
+            for (List <Comparable []> [] chunk : bParts) {
+                for (Comparable [] b : chunk [p]) {
+                    table.computeIfAbsent (keyOf (b, b_cols), k -> new ArrayList <> (1)).add (b);
+                } // for
+            } // for
+            List <Comparable []> rows = new ArrayList <> ();
+            if (! table.isEmpty ()) {
+                for (List <Comparable []> [] chunk : pParts) {
+                    for (Comparable [] q : chunk [p]) {
+                        List <Comparable []> matches = table.get (keyOf (q, p_cols));
+                        if (matches == null) continue;
+                        for (Comparable [] b : matches) {
+                            rows.add (buildLeft ? ArrayUtil.concat (b, q) : ArrayUtil.concat (q, b));
+                        } // for
+                    } // for
+                } // for
+            } // if
+            results [p] = rows;
+        })).join ();
+
+        int total = 0;
+        for (List <Comparable []> r : results) total += r.size ();
+        List <Comparable []> rows = new ArrayList <> (total);
+        for (List <Comparable []> r : results) rows.addAll (r);
+        return rows;
+    } // parallelHashJoin
+
+    /************************************************************************************
+     * Radix-partition a list of tuples in parallel on the top bits of the hash of the
+     * given columns.  The list is divided into dop chunks; each chunk is partitioned
+     * independently so no synchronization is needed.
+     *
+     * @param fjp   the pool to run on
+     * @param rows  the tuples to partition
+     * @param cols  the column positions to hash
+     * @param bits  the number of radix bits (2^bits partitions)
+     * @param dop   the number of chunks
+     * @return  the partitions, indexed by [chunk][partition]
+     */
+    @SuppressWarnings("unchecked")
+    private static List <Comparable []> [][] partition (ForkJoinPool fjp, List <Comparable []> rows,
+                                                        int [] cols, int bits, int dop)
+    {
+        int nParts = 1 << bits;
+        int chunk  = (rows.size () + dop - 1) / dop;
+        List <Comparable []> [][] parts = new List [dop][nParts];
+
+        fjp.submit (() -> IntStream.range (0, dop).parallel ().forEach (c -> {
+            List <Comparable []> [] local = parts [c];
+            for (int p = 0; p < nParts; p++) local [p] = new ArrayList <> ();
+            int end = Math.min (rows.size (), (c + 1) * chunk);
+            for (int i = c * chunk; i < end; i++) {
+                Comparable [] t = rows.get (i);
+                local [radix (hashCols (t, cols), bits)].add (t);
+            } // for
+        })).join ();
+
+        return parts;
+    } // partition
+
+    /************************************************************************************
+     * Perform a Grace hash join.  If the smaller (build) input fits in the memory
+     * budget this is just a hash join.  Otherwise both inputs are hash-partitioned
+     * on their join columns into temporary files under DIR, using the compact
+     * domain-based encoding of TupleCodec, and each pair of partitions is then
+     * joined in memory, one pair at a time.  Probe tuples rejected by the Bloom
+     * filter (if any) are never written to disk.
+     *
+     * @param t_cols  the join column positions in this table
+     * @param u_cols  the join column positions in table2
+     * @param table2  the rhs table in the join operation
+     * @param bloom   the Bloom filter on the smaller input's join values, or null
+     * @return  the list of joined tuples, or null if spilling failed
+     */
+    private List <Comparable []> graceHashJoin (int [] t_cols, int [] u_cols, Table table2,
+                                                BloomFilter bloom)
+    {
+        boolean buildLeft = tuples.size () <= table2.tuples.size ();
+        Table   bTable    = buildLeft ? this : table2;
+        Table   pTable    = buildLeft ? table2 : this;
+        int []  b_cols    = buildLeft ? t_cols : u_cols;
+        int []  p_cols    = buildLeft ? u_cols : t_cols;
+
+        long buildSize = estimateSize (bTable.tuples);
+        if (buildSize <= memoryBudget) return hashJoin (tuples, t_cols, table2.tuples, u_cols, bloom);
+
+        int bits = 1;
+        while ((1L << bits) * memoryBudget < 2 * buildSize && bits < 10) bits++;
+        int nParts = 1 << bits;
+
+        TupleCodec bCodec = new TupleCodec (bTable.domain);
+        TupleCodec pCodec = new TupleCodec (pTable.domain);
+        File []    bFiles = new File [nParts];
+        File []    pFiles = new File [nParts];
+        List <Comparable []> rows = new ArrayList <> ();
+
         try {
-            ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + EXT));
-            tab = (Table) ois.readObject ();
-            ois.close ();
+            int [] bCount = spill (bTable.tuples, b_cols, bits, bCodec, bFiles, "build", null);
+            int [] pCount = spill (pTable.tuples, p_cols, bits, pCodec, pFiles, "probe", bloom);
+
+            for (int p = 0; p < nParts; p++) {
+                if (bCount [p] == 0 || pCount [p] == 0) continue;
+
+                Map <KeyType, List <Comparable []>> table = new HashMap <> (2 * bCount [p]);
+                try (DataInputStream in = openSpill (bFiles [p])) {
+                    for (int i = 0; i < bCount [p]; i++) {
+                        Comparable [] b = bCodec.read (in);
+                        table.computeIfAbsent (keyOf (b, b_cols), k -> new ArrayList <> (1)).add (b);
+                    } // for
+                } // try
+
+                try (DataInputStream in = openSpill (pFiles [p])) {
+                    for (int i = 0; i < pCount [p]; i++) {
+                        Comparable [] q = pCodec.read (in);
+                        List <Comparable []> matches = table.get (keyOf (q, p_cols));
+                        if (matches == null) continue;
+                        for (Comparable [] b : matches) {
+                            rows.add (buildLeft ? ArrayUtil.concat (b, q) : ArrayUtil.concat (q, b));
+                        } // for
+                    } // for
+                } // try
+            } // for
         } catch (IOException ex) {
-            out.println ("load: IO Exception");
-            ex.printStackTrace ();
-        } catch (ClassNotFoundException ex) {
-            out.println ("load: Class Not Found Exception");
+            out.println ("join: IO Exception");
             ex.printStackTrace ();
+            return null;
+        } finally {
+            for (File f : bFiles) if (f != null) f.delete ();
+            for (File f : pFiles) if (f != null) f.delete ();
         } // try
-        return tab;
-    } // load
+
+        return rows;
+    } // graceHashJoin
 
     /************************************************************************************
-     * Save this table in a file.
+     * Hash-partition the given tuples on the given columns into 2^bits temporary
+     * files under DIR.
+     *
+     * @param rows   the tuples to partition
+     * @param cols   the column positions to hash
+     * @param bits   the number of radix bits (2^bits partitions)
+     * @param codec  the codec for encoding the tuples
+     * @param files  the array to receive the partition files
+     * @param tag    a tag to include in the file names
+     * @param bloom  a Bloom filter the tuples must pass to be written, or null
+     * @return  the number of tuples written to each partition
      */
-    public void save ()
+    private int [] spill (List <Comparable []> rows, int [] cols, int bits, TupleCodec codec,
+                          File [] files, String tag, BloomFilter bloom)
+            throws IOException
     {
+        new File (DIR).mkdirs ();
+        int []               counts = new int [files.length];
+        DataOutputStream []  outs   = new DataOutputStream [files.length];
         try {
-            ObjectOutputStream oos = new ObjectOutputStream (new FileOutputStream (DIR + name + EXT));
-            oos.writeObject (this);
-            oos.close ();
-        } catch (IOException ex) {
-            out.println ("save: IO Exception");
-            ex.printStackTrace ();
+            for (int p = 0; p < files.length; p++) {
+                files [p] = File.createTempFile (name + "." + tag + p + ".", ".tmp", new File (DIR));
+                outs [p]  = new DataOutputStream (new BufferedOutputStream (
+                                new FileOutputStream (files [p]), SPILL_BUFFER));
+            } // for
+            for (Comparable [] t : rows) {
+                int h = hashCols (t, cols);
+                if (bloom != null && ! bloom.mightContain (h)) continue;
+                int p = radix (h, bits);
+                codec.write (outs [p], t);
+                counts [p]++;
+            } // for
+        } finally {
+            for (DataOutputStream o : outs) if (o != null) o.close ();
         } // try
-    } // save
+        return counts;
+    } // spill
 
-    public int numTuples() {
-        return this.tuples.size();
-    }
+    /************************************************************************************
+     * Open a spill file for reading.
+     *
+     * @param f  the spill file
+     * @return  a buffered data input stream on the file
+     */
+    private static DataInputStream openSpill (File f)
+            throws IOException
+    {
+        return new DataInputStream (new BufferedInputStream (new FileInputStream (f), SPILL_BUFFER));
+    } // openSpill
 
-    //----------------------------------------------------------------------------------
-    // Private Methods
-    //----------------------------------------------------------------------------------
+    /************************************************************************************
+     * Make a comparator for tuples with the given domains on the given columns.  Each
+     * column is compared with the primitive comparison for its domain, so no keys are
+     * built.
+     *
+     * @param dom   the attribute domains of the tuples
+     * @param cols  the column positions (most significant first)
+     * @param desc  whether each column is in descending order
+     * @return  the comparator
+     */
+    @SuppressWarnings("unchecked")
+    static Comparator <Comparable []> comparator (Class [] dom, int [] cols, boolean [] desc)
+    {
+        Comparator <Comparable []> cmp = null;
+        for (int j = 0; j < cols.length; j++) {
+            int                        c  = cols [j];
+            Class                      d  = dom [c];
+            Comparator <Comparable []> cj;
+            if (d == Integer.class)          cj = (a, b) -> Integer.compare ((Integer) a [c], (Integer) b [c]);
+            else if (d == Long.class)        cj = (a, b) -> Long.compare ((Long) a [c], (Long) b [c]);
+            else if (d == Double.class)      cj = (a, b) -> Double.compare ((Double) a [c], (Double) b [c]);
+            else if (d == String.class)      cj = (a, b) -> ((String) a [c]).compareTo ((String) b [c]);
+            else                             cj = (a, b) -> a [c].compareTo (b [c]);
+            if (desc [j]) cj = cj.reversed ();
+            cmp = (cmp == null) ? cj : cmp.thenComparing (cj);
+        } // for
+        return cmp;
+    } // comparator
 
     /************************************************************************************
-     * Determine whether the two tables (this and table2) are compatible, i.e., have
-     * the same number of attributes each with the same corresponding domain.
+     * Parse sort directions ("asc" or "desc" for each attribute; missing ones are
+     * "asc").
      *
-     * @param table2  the rhs table
-     * @return  whether the two tables are compatible
+     * @param directions  the space-separated directions
+     * @param n           the number of sort attributes
+     * @return  whether each attribute is descending, or null (with a message) on an error
      */
-    private boolean compatible (Table table2)
+    static boolean [] descending (String directions, int n)
     {
-        if (domain.length != table2.domain.length) {
-            out.println ("compatible ERROR: table have different arity");
-            return false;
-        } // if
-        for (int j = 0; j < domain.length; j++) {
-            if (domain [j] != table2.domain [j]) {
-                out.println ("compatible ERROR: tables disagree on domain " + j);
-                return false;
+        String []  dirs = directions.trim ().isEmpty () ? new String [0] : directions.trim ().split (" ");
+        boolean [] desc = new boolean [n];
+        for (int j = 0; j < dirs.length && j < n; j++) {
+            if (dirs [j].equalsIgnoreCase ("desc"))      desc [j] = true;
+            else if (! dirs [j].equalsIgnoreCase ("asc")) {
+                out.println ("order ERROR: unknown direction " + dirs [j]);
+                return null;
             } // if
         } // for
-        return true;
-    } // compatible
+        return desc;
+    } // descending
 
     /************************************************************************************
-     * Match the column and attribute names to determine the domains.
+     * Return the first n of the given tuples in the order of cmp, using a bounded heap
+     * that holds the best n seen so far (its root is the worst of them, so a new tuple
+     * need only be compared with the root).  Ties are broken by arrival order, so the
+     * result is the same as a stable sort followed by taking the first n.
      *
-     * @param column  the array of column names
-     * @return  an array of column index positions
+     * @param it   the tuples
+     * @param n    the number of tuples wanted
+     * @param cmp  the sort order
+     * @return  the first n tuples, in order
      */
-    private int [] match (String [] column)
+    static List <Comparable []> topN (Iterator <Comparable []> it, int n, Comparator <Comparable []> cmp)
     {
-        int [] colPos = new int [column.length];
-
-        for (int j = 0; j < column.length; j++) {
-            boolean matched = false;
-            for (int k = 0; k < attribute.length; k++) {
-                if (column [j].equals (attribute [k])) {
-                    matched = true;
-                    colPos [j] = k;
-                } // for
-            } // for
-            if ( ! matched) {
-                out.println ("match: domain not found for " + column [j]);
+        if (n <= 0) return new ArrayList <> ();
+
+        // heap entries are (tuple, arrival number); the root is the worst entry
+        Comparator <Object []>   order = (a, b) -> {
+            int c = cmp.compare ((Comparable []) a [0], (Comparable []) b [0]);
+            return (c != 0) ? c : Long.compare ((Long) a [1], (Long) b [1]);
+        };
+        PriorityQueue <Object []> heap = new PriorityQueue <> (Math.min (n, 1024), order.reversed ());
+        for (long i = 0; it.hasNext (); i++) {
+            Comparable [] t = it.next ();
+            if (heap.size () < n) {
+                heap.add (new Object [] { t, i });
+            } else if (cmp.compare (t, (Comparable []) heap.peek () [0]) < 0) {
+                Object [] e = heap.poll ();                              // reuse the evicted entry
+                e [0] = t;
+                e [1] = i;
+                heap.add (e);
             } // if
         } // for
 
-        return colPos;
-    } // match
+        Object [][] best = heap.toArray (new Object [0][]);
+        Arrays.sort (best, order);
+        List <Comparable []> rows = new ArrayList <> (best.length);
+        for (Object [] e : best) rows.add ((Comparable []) e [0]);
+        return rows;
+    } // topN
 
     /************************************************************************************
-     * Extract the attributes specified by the column array from tuple t.
+     * Sort the given tuples in place on the given columns: by radix sort if all the
+     * columns are Integers, otherwise by merge sort.
      *
-     * @param t       the tuple to extract from
-     * @param column  the array of column names
-     * @return  a smaller tuple extracted from tuple t 
+     * @param rows  the tuples to sort
+     * @param dom   the attribute domains of the tuples
+     * @param cols  the column positions (most significant first)
+     * @param desc  whether each column is in descending order
      */
-    private Comparable [] extract (Comparable [] t, String [] column)
+    private static void sortRows (List <Comparable []> rows, Class [] dom, int [] cols, boolean [] desc)
     {
-        Comparable [] tup = new Comparable [column.length];
-        int [] colPos = match (column);
-        for (int j = 0; j < column.length; j++) tup [j] = t [colPos [j]];
-        return tup;
-    } // extract
+        boolean allInt = true;
+        for (int c : cols) allInt &= dom [c] == Integer.class;
+        if (allInt) radixSort (rows, cols, desc);
+        else        rows.sort (comparator (dom, cols, desc));
+    } // sortRows
 
     /************************************************************************************
-     * Check the size of the tuple (number of elements in list) as well as the type of
-     * each value to ensure it is from the right domain. 
+     * Sort the given tuples in place on the given Integer columns using a stable LSD
+     * radix sort: one counting-sort pass per byte, from the least significant byte of
+     * the least significant column up.  The sign bit is flipped so negative values
+     * order first (and all bits are flipped for descending columns).  Passes in which
+     * every tuple has the same byte are skipped.
      *
-     * @param t  the tuple as a list of attribute values
-     * @return  whether the tuple has the right size and values that comply
-     *          with the given domains
+     * @param rows  the tuples to sort
+     * @param cols  the Integer column positions (most significant first)
+     * @param desc  whether each column is in descending order
      */
-    private boolean typeCheck (Comparable [] t)
+    private static void radixSort (List <Comparable []> rows, int [] cols, boolean [] desc)
     {
-        //check if the tuple has the correct amount of attributes
-        if (t.length != attribute.length)
-            return false;
+        int            n    = rows.size ();
+        Comparable [][] src = rows.toArray (new Comparable [n][]);
+        Comparable [][] dst = new Comparable [n][];
+        int []         keys = new int [n];
+        int []         cnt  = new int [257];
+
+        for (int j = cols.length - 1; j >= 0; j--) {
+            int flip = desc [j] ? 0x7fffffff : 0x80000000;
+            for (int shift = 0; shift < 32; shift += 8) {
+                for (int i = 0; i < n; i++) keys [i] = (((Integer) src [i][cols [j]]) ^ flip) >>> shift & 0xff;
+                Arrays.fill (cnt, 0);
+                for (int i = 0; i < n; i++) cnt [keys [i] + 1]++;
+                if (n == 0 || cnt [keys [0] + 1] == n) continue;         // all the same byte
+                for (int b = 0; b < 256; b++) cnt [b + 1] += cnt [b];
+                for (int i = 0; i < n; i++) dst [cnt [keys [i]]++] = src [i];
+                Comparable [][] tmp = src; src = dst; dst = tmp;
+            } // for
+        } // for
 
-        //checks if each attribute is of the correct class
-        for (int i = 0; i < t.length; i++) {
-            if (!(domain[i].isInstance(t[i])))
-                return false;
-        }
+        for (int i = 0; i < n; i++) rows.set (i, src [i]);
+    } // radixSort
 
-        return true;
-    } // typeCheck
+    /************************************************************************************
+     * Sort the given tuples, reading them once.  Tuples are gathered into a run until
+     * the run exceeds the memory budget (see setMemoryBudget); if the input ends
+     * first, the run is sorted in memory.  Otherwise each run is sorted and written
+     * to a temporary file under DIR (using TupleCodec), and the returned iterator
+     * merges the runs with a priority queue holding the head of each run, so only
+     * one tuple per run is in memory.  The run files are deleted once the merge is
+     * exhausted or closed (the iterator is Closeable; see Query.limit), or else when
+     * the JVM exits.
+     *
+     * @param it    the tuples to sort
+     * @param name  the name used for the run files
+     * @param dom   the attribute domains of the tuples
+     * @param cols  the column positions (most significant first)
+     * @param desc  whether each column is in descending order
+     * @return  an iterator over the tuples in sorted order
+     * @throws UncheckedIOException  if a run cannot be written or read
+     */
+    static Iterator <Comparable []> sort (Iterator <Comparable []> it, String name, Class [] dom,
+                                          int [] cols, boolean [] desc)
+    {
+        List <File>          files = new ArrayList <> ();
+        List <Integer>       sizes = new ArrayList <> ();
+        List <Comparable []> run   = new ArrayList <> ();
+        TupleCodec           codec = new TupleCodec (dom);
+        long                 bytes = 0;
+
+        try {
+            while (it.hasNext ()) {
+                Comparable [] t = it.next ();
+                run.add (t);
+                bytes += tupleSize (t);
+                if (bytes > memoryBudget) {
+                    files.add (spillRun (run, name, files.size (), codec, dom, cols, desc));
+                    sizes.add (run.size ());
+                    run   = new ArrayList <> ();
+                    bytes = 0;
+                } // if
+            } // while
+            if (files.isEmpty ()) {
+                sortRows (run, dom, cols, desc);
+                return run.iterator ();
+            } // if
+            if (! run.isEmpty ()) {
+                files.add (spillRun (run, name, files.size (), codec, dom, cols, desc));
+                sizes.add (run.size ());
+            } // if
+        } catch (IOException ex) {
+            for (File f : files) f.delete ();
+            throw new UncheckedIOException (ex);
+        } // try
+
+        int                        nRuns = files.size ();
+        DataInputStream []         ins   = new DataInputStream [nRuns];
+        int []                     left  = new int [nRuns];
+        Comparator <Comparable []> cmp   = comparator (dom, cols, desc);
+
+        // the queue holds the head tuple of each run, tagged with its run number
+        // (ties go to the earlier run, keeping the sort stable)
+        PriorityQueue <Object []> heads = new PriorityQueue <> (nRuns, (a, b) -> {
+            int c = cmp.compare ((Comparable []) a [0], (Comparable []) b [0]);
+            return (c != 0) ? c : Integer.compare ((Integer) a [1], (Integer) b [1]);
+        });
+
+        class Merge
+              implements Iterator <Comparable []>, Closeable
+        {
+            boolean opened = false;
+
+            public boolean hasNext ()
+            {
+                if (! opened) open ();
+                if (heads.isEmpty ()) close ();
+                return ! heads.isEmpty ();
+            } // hasNext
+
+            public Comparable [] next ()
+            {
+                if (! hasNext ()) throw new NoSuchElementException ();
+                Object [] h = heads.poll ();
+                int       r = (Integer) h [1];
+                Comparable [] t = (Comparable []) h [0];
+                if (left [r]-- > 0) {
+                    h [0] = read (r);
+                    heads.add (h);
+                } // if
+                return t;
+            } // next
+
+            private void open ()
+            {
+                opened = true;
+                for (int r = 0; r < nRuns; r++) {
+                    try {
+                        ins [r] = openSpill (files.get (r));
+                    } catch (IOException ex) {
+                        close ();
+                        throw new UncheckedIOException (ex);
+                    } // try
+                    left [r] = sizes.get (r);
+                    if (left [r]-- > 0) heads.add (new Object [] { read (r), r });
+                } // for
+            } // open
+
+            private Comparable [] read (int r)
+            {
+                try {
+                    return codec.read (ins [r]);
+                } catch (IOException ex) {
+                    close ();
+                    throw new UncheckedIOException (ex);
+                } // try
+            } // read
+
+            public void close ()
+            {
+                opened = true;
+                heads.clear ();
+                for (int r = 0; r < nRuns; r++) {
+                    try { if (ins [r] != null) ins [r].close (); } catch (IOException ex) { /* ignore */ }
+                    ins [r] = null;
+                    files.get (r).delete ();
+                } // for
+            } // close
+        } // Merge class
+
+        return new Merge ();
+    } // sort
 
     /************************************************************************************
-     * Find the classes in the "java.lang" package with given names.
+     * Sort the given run in memory and write it to a temporary file under DIR.
      *
-     * @param className  the array of class name (e.g., {"Integer", "String"})
-     * @return  an array of Java classes
+     * @param run    the tuples of the run
+     * @param name   the name used for the run file
+     * @param r      the run number
+     * @param codec  the codec for the tuples
+     * @param dom    the attribute domains of the tuples
+     * @param cols   the column positions (most significant first)
+     * @param desc   whether each column is in descending order
+     * @return  the run file
      */
-    private static Class [] findClass (String [] className)
+    private static File spillRun (List <Comparable []> run, String name, int r, TupleCodec codec,
+                                  Class [] dom, int [] cols, boolean [] desc)
+            throws IOException
     {
-        Class [] classArray = new Class [className.length];
+        sortRows (run, dom, cols, desc);
+        new File (DIR).mkdirs ();
+        File f = File.createTempFile (name + ".run" + r + ".", ".tmp", new File (DIR));
+        f.deleteOnExit ();
+        try (DataOutputStream o = new DataOutputStream (new BufferedOutputStream (
+                                      new FileOutputStream (f), SPILL_BUFFER))) {
+            for (Comparable [] t : run) codec.write (o, t);
+        } // try
+        return f;
+    } // spillRun
 
-        for (int i = 0; i < className.length; i++) {
-            try {
-                classArray [i] = Class.forName ("java.lang." + className [i]);
-            } catch (ClassNotFoundException ex) {
-                out.println ("findClass: " + ex);
-            } // try
+    /************************************************************************************
+     * Estimate the heap space (in bytes) taken by the given tuples by sampling up to
+     * 100 of them.  Each tuple is charged for its array plus its boxed values.
+     *
+     * @param rows  the tuples to size
+     * @return  the estimated size in bytes
+     */
+    private static long estimateSize (List <Comparable []> rows)
+    {
+        int n = rows.size ();
+        if (n == 0) return 0;
+
+        int  step   = Math.max (1, n / 100);
+        long sample = 0;
+        int  m      = 0;
+        for (int i = 0; i < n; i += step, m++) sample += tupleSize (rows.get (i));
+        return sample * n / m;
+    } // estimateSize
+
+    /************************************************************************************
+     * Estimate the heap space (in bytes) taken by tuple t: its array plus its boxed
+     * values.
+     *
+     * @param t  the tuple to size
+     * @return  the estimated size in bytes
+     */
+    private static long tupleSize (Comparable [] t)
+    {
+        long size = 16 + 4L * t.length;
+        for (Comparable v : t) {
+            if (v instanceof String)                           size += 40 + 2L * ((String) v).length ();
+            else if (v instanceof Long || v instanceof Double) size += 24;
+            else                                               size += 16;
         } // for
+        return size;
+    } // tupleSize
 
-        return classArray;
-    } // findClass
+    /************************************************************************************
+     * Compute the hash of the given columns of tuple t.  This agrees with hashCode
+     * for the KeyType formed from those columns.
+     *
+     * @param t     the tuple to hash
+     * @param cols  the column positions to hash
+     * @return  the hash code
+     */
+    private static int hashCols (Comparable [] t, int [] cols)
+    {
+        int sum = 0;
+        for (int c : cols) sum = 7 * sum + t [c].hashCode ();
+        return sum;
+    } // hashCols
 
     /************************************************************************************
-     * Extract the corresponding domains.
+     * Map a hash code to one of 2^bits partitions using the high bits of a scrambled
+     * copy of the hash (the low bits are left for the per-partition hash tables).
      *
-     * @param colPos the column positions to extract.
-     * @param group  where to extract from
-     * @return  the extracted domains
+     * @param h     the hash code
+     * @param bits  the number of radix bits
+     * @return  the partition number
      */
-    private Class [] extractDom (int [] colPos, Class [] group)
+    private static int radix (int h, int bits)
     {
-        Class [] obj = new Class [colPos.length];
+        return (h * 0x9E3779B9) >>> (32 - bits);
+    } // radix
 
-        for (int j = 0; j < colPos.length; j++) {
-            obj [j] = group [colPos [j]];
-        } // for
+    /************************************************************************************
+     * Return the pool of worker threads for parallel operators, creating it with the
+     * configured degree of parallelism if needed.
+     *
+     * @return  the fork-join pool
+     */
+    private static synchronized ForkJoinPool pool ()
+    {
+        if (pool == null) pool = new ForkJoinPool (parallelism);
+        return pool;
+    } // pool
 
-        return obj;
-    } // extractDom
+    /************************************************************************************
+     * Return the thread compacting tables' files in the background, creating it if
+     * needed.
+     *
+     * @return  the compactor
+     */
+    private static synchronized ExecutorService compactor ()
+    {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor (r -> {
+                Thread th = new Thread (r, "compactor");
+                th.setDaemon (true);
+                return th;
+            });
+        } // if
+        return compactor;
+    } // compactor
+
+    /************************************************************************************
+     * Return the buffer pool for tables kept in pages, creating it with the configured
+     * number of frames if needed.
+     *
+     * @return  the buffer pool
+     */
+    private static synchronized BufferPool bufferPool ()
+    {
+        if (bufferPool == null) bufferPool = new BufferPool (poolFrames);
+        return bufferPool;
+    } // bufferPool
+
+    /************************************************************************************
+     * Convert the value to the given domain.  A value already in the domain is
+     * returned as is; a number of another numeric type is converted only if the
+     * conversion is exact (e.g., Integer 5 to Double 5.0, but not Double 5.5 to
+     * Integer).
+     *
+     * @param v    the value to convert (may be null)
+     * @param dom  the domain to convert to
+     * @return  the converted value, or null if v is null or cannot be converted
+     */
+    private static Comparable toDomain (Comparable v, Class dom)
+    {
+        if (v == null || v.getClass () == dom) return v;
+        if (! (v instanceof Number)) return null;
+
+        Number n = (Number) v, w;
+        if      (dom == Long.class)    w = n.longValue ();
+        else if (dom == Integer.class) w = n.intValue ();
+        else if (dom == Short.class)   w = n.shortValue ();
+        else if (dom == Byte.class)    w = n.byteValue ();
+        else if (dom == Double.class)  w = n.doubleValue ();
+        else if (dom == Float.class)   w = n.floatValue ();
+        else return null;
+
+        boolean exact = Double.isFinite (n.doubleValue ()) && Double.isFinite (w.doubleValue ())
+                      ? new BigDecimal (n.toString ()).compareTo (new BigDecimal (w.toString ())) == 0
+                      : Double.compare (n.doubleValue (), w.doubleValue ()) == 0;
+        return exact ? (Comparable) w : null;
+    } // toDomain
+
+    /************************************************************************************
+     * Form the (possibly composite) key made up of the given columns of tuple t.
+     *
+     * @param t     the tuple to extract the key from
+     * @param cols  the column positions making up the key
+     * @return  the key for tuple t
+     */
+    static KeyType keyOf (Comparable [] t, int [] cols)
+    {
+        Comparable [] keyVal = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) keyVal [j] = t [cols [j]];
+        return new KeyType (keyVal);
+    } // keyOf
 
 } // Table class
 
@@ -55,9 +55,9 @@ public class TestTupleGenerator
                                             { "crsCode", "Course", "crsCode" },
                                             { "crsCode semester", "Teaching", "crsCode semester" }});
 
-        String [] tables = { "Student", "Professor", "Course", "Transcript", "Teaching" };
+        String [] tables = { "Student", "Professor", "Course", "Teaching", "Transcript" };
         
-        int tups [] = new int [] { 10000, 1000, 2000, 50000, 5000 };
+        int tups [] = new int [] { 10000, 1000, 2000, 5000, 50000 };
     
         Comparable [][][] resultTest = test.generate (tups);
 
@@ -74,7 +74,9 @@ public class TestTupleGenerator
                 if (j % 100 == 0) {
                     ourIDs.add((Integer) resultTest[i][j][0]);
                 }
-                ourTable.insert(resultTest[i][j]);
+                if (! ourTable.insert(resultTest[i][j])) {
+                    throw new IllegalStateException ("insert failed for " + Arrays.toString (resultTest[i][j]));
+                } // if
                 out.println ();
             } // for
             out.println ();
@@ -91,6 +93,80 @@ public class TestTupleGenerator
 
         out.println("Tables Size: " + ourTable.numTuples());
         out.println("Select Time: " + duration);
+
+        Table transcript = new Table ("Transcript", "studId crsCode semester grade",
+                                      "Integer String String String", "studId crsCode semester");
+        for (int j = 0; j < resultTest [4].length; j++) transcript.insert (resultTest [4][j]);
+        if (transcript.numTuples () != resultTest [4].length) {
+            throw new IllegalStateException ("Transcript has " + transcript.numTuples () + " of "
+                                           + resultTest [4].length + " tuples");
+        } // if
+
+        Table.JoinMethod [] methods = { Table.JoinMethod.HASH, Table.JoinMethod.INDEX };
+        for (Table.JoinMethod m : methods) {
+            startTime = System.nanoTime();
+            Table result = transcript.join ("studId", "id", ourTable, m);
+            endTime = System.nanoTime();
+            out.println(m + " Join Size: " + result.numTuples());
+            out.println(m + " Join Time: " + (float) (endTime - startTime) / 1000000);
+        } // for
+
+        for (int dop = 1; dop <= Runtime.getRuntime ().availableProcessors (); dop *= 2) {
+            Table.setParallelism (dop);
+            startTime = System.nanoTime();
+            Table result = transcript.join ("studId", "id", ourTable, Table.JoinMethod.PARALLEL_HASH);
+            endTime = System.nanoTime();
+            out.println("PARALLEL_HASH (dop = " + dop + ") Join Size: " + result.numTuples());
+            out.println("PARALLEL_HASH (dop = " + dop + ") Join Time: " + (float) (endTime - startTime) / 1000000);
+        } // for
+
+        for (int dop = 1; dop <= Runtime.getRuntime ().availableProcessors (); dop *= 2) {
+            Table.setParallelism (dop);
+            startTime = System.nanoTime();
+            Table result = transcript.groupBy ("crsCode", "count");
+            endTime = System.nanoTime();
+            out.println("GroupBy crsCode (dop = " + dop + ") Groups: " + result.numTuples());
+            out.println("GroupBy crsCode (dop = " + dop + ") Time: " + (float) (endTime - startTime) / 1000000);
+        } // for
+
+        for (int rep = 0; rep < 3; rep++) {
+            startTime = System.nanoTime();
+            transcript.saveObject ();
+            long saved = System.nanoTime();
+            Table loaded = Table.loadObject ("Transcript");
+            endTime = System.nanoTime();
+            out.println("Object Save Time: " + (float) (saved - startTime) / 1000000
+                      + " Load Time: " + (float) (endTime - saved) / 1000000
+                      + " Size: " + new java.io.File ("store/Transcript.ser").length ());
+
+            new java.io.File ("store/Transcript.dbf").delete ();       // force a full save
+            startTime = System.nanoTime();
+            transcript.save ();
+            saved = System.nanoTime();
+            loaded = Table.load ("Transcript");
+            endTime = System.nanoTime();
+            out.println("Columnar Save Time: " + (float) (saved - startTime) / 1000000
+                      + " Load Time: " + (float) (endTime - saved) / 1000000
+                      + " Size: " + new java.io.File ("store/Transcript.dbf").length ());
+        } // for
+
+        for (int rep = 0; rep < 3; rep++) {
+            for (int j = 0; j < 500; j++) transcript.insert (resultTest [4][j]);
+            startTime = System.nanoTime();
+            transcript.save ();
+            endTime = System.nanoTime();
+            out.println("Delta Save (500 tuples) Time: " + (float) (endTime - startTime) / 1000000);
+        } // for
+
+        Table.setBufferPool (64);
+        transcript.page ();
+        for (int rep = 0; rep < 3; rep++) {
+            startTime = System.nanoTime();
+            Table result = transcript.select (Expr.col ("studId").lt (500000));
+            endTime = System.nanoTime();
+            out.println("Paged Select Size: " + result.numTuples());
+            out.println("Paged Select Time: " + (float) (endTime - startTime) / 1000000);
+        } // for
     } // main
 
 } // TestTupleGenerator
@@ -0,0 +1,212 @@
+/****************************************************************************************
+ * @file  TupleCodec.java
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/****************************************************************************************
+ * This class encodes tuples in a compact binary form driven by a table's domain array
+ * (e.g., an Integer takes 4 bytes, a String its UTF-8 bytes plus a 4 byte length, so
+ * long Strings need no special handling).  It is used for spill files and is much
+ * smaller and faster than Java serialization since no class or object-graph
+ * information is written.
+ */
+class TupleCodec
+{
+    /** Type codes for the supported domains.
+     */
+    static final byte INTEGER = 0, LONG = 1, SHORT = 2, BYTE = 3, DOUBLE = 4, FLOAT = 5,
+                      CHARACTER = 6, STRING = 7;
+
+    /** The type code for each column.
+     */
+    private final byte [] type;
+
+    /************************************************************************************
+     * Construct a codec for tuples with the given domains.
+     *
+     * @param domain  the attribute domains (data types)
+     */
+    TupleCodec (Class [] domain)
+    {
+        type = new byte [domain.length];
+        for (int j = 0; j < domain.length; j++) type [j] = typeOf (domain [j]);
+    } // constructor
+
+    /************************************************************************************
+     * Write tuple t to the given output.
+     *
+     * @param out  the output to write to
+     * @param t    the tuple to write
+     */
+    void write (DataOutput out, Comparable [] t)
+           throws IOException
+    {
+        for (int j = 0; j < type.length; j++) writeValue (out, type [j], t [j]);
+    } // write
+
+    /************************************************************************************
+     * Read a tuple from the given input.
+     *
+     * @param in  the input to read from
+     * @return  the tuple read
+     */
+    Comparable [] read (DataInput in)
+           throws IOException
+    {
+        Comparable [] t = new Comparable [type.length];
+        for (int j = 0; j < type.length; j++) t [j] = readValue (in, type [j]);
+        return t;
+    } // read
+
+    /************************************************************************************
+     * Put tuple t into the buffer at its position (Strings are written as a 4 byte
+     * length followed by their UTF-8 bytes).
+     *
+     * @param buf  the buffer to write to
+     * @param t    the tuple to write
+     */
+    void put (ByteBuffer buf, Comparable [] t)
+    {
+        for (int j = 0; j < type.length; j++) {
+            Comparable v = t [j];
+            switch (type [j]) {
+            case INTEGER:   buf.putInt ((Integer) v);     break;
+            case LONG:      buf.putLong ((Long) v);       break;
+            case SHORT:     buf.putShort ((Short) v);     break;
+            case BYTE:      buf.put ((Byte) v);           break;
+            case DOUBLE:    buf.putDouble ((Double) v);   break;
+            case FLOAT:     buf.putFloat ((Float) v);     break;
+            case CHARACTER: buf.putChar ((Character) v);  break;
+            default:
+                byte [] b = ((String) v).getBytes (StandardCharsets.UTF_8);
+                buf.putInt (b.length).put (b);
+            } // switch
+        } // for
+    } // put
+
+    /************************************************************************************
+     * Get the tuple starting at the given offset of the buffer, using only absolute
+     * reads so the buffer may be shared by concurrent readers.
+     *
+     * @param buf  the buffer to read from
+     * @param off  the offset of the tuple
+     * @return  the tuple read
+     */
+    Comparable [] get (ByteBuffer buf, int off)
+    {
+        Comparable [] t = new Comparable [type.length];
+        for (int j = 0; j < type.length; j++) {
+            switch (type [j]) {
+            case INTEGER:   t [j] = buf.getInt (off);     off += 4; break;
+            case LONG:      t [j] = buf.getLong (off);    off += 8; break;
+            case SHORT:     t [j] = buf.getShort (off);   off += 2; break;
+            case BYTE:      t [j] = buf.get (off);        off += 1; break;
+            case DOUBLE:    t [j] = buf.getDouble (off);  off += 8; break;
+            case FLOAT:     t [j] = buf.getFloat (off);   off += 4; break;
+            case CHARACTER: t [j] = buf.getChar (off);    off += 2; break;
+            default:
+                byte [] b = new byte [buf.getInt (off)];
+                buf.get (off + 4, b);
+                t [j] = new String (b, StandardCharsets.UTF_8);
+                off += 4 + b.length;
+            } // switch
+        } // for
+        return t;
+    } // get
+
+    /************************************************************************************
+     * Return the type code for the given domain.
+     *
+     * @param dom  the domain (data type)
+     * @return  the type code
+     */
+    static byte typeOf (Class dom)
+    {
+        if (dom == Integer.class)   return INTEGER;
+        if (dom == Long.class)      return LONG;
+        if (dom == Short.class)     return SHORT;
+        if (dom == Byte.class)      return BYTE;
+        if (dom == Double.class)    return DOUBLE;
+        if (dom == Float.class)     return FLOAT;
+        if (dom == Character.class) return CHARACTER;
+        if (dom == String.class)    return STRING;
+        throw new IllegalArgumentException ("TupleCodec: unsupported domain " + dom);
+    } // typeOf
+
+    /************************************************************************************
+     * Return the domain for the given type code (the inverse of typeOf).
+     *
+     * @param type  the type code
+     * @return  the domain (data type)
+     */
+    static Class domainOf (byte type)
+    {
+        switch (type) {
+        case INTEGER:   return Integer.class;
+        case LONG:      return Long.class;
+        case SHORT:     return Short.class;
+        case BYTE:      return Byte.class;
+        case DOUBLE:    return Double.class;
+        case FLOAT:     return Float.class;
+        case CHARACTER: return Character.class;
+        case STRING:    return String.class;
+        default:        throw new IllegalArgumentException ("TupleCodec: unknown type code " + type);
+        } // switch
+    } // domainOf
+
+    /************************************************************************************
+     * Write a single value of the given type (a String as a 4 byte length followed by
+     * its UTF-8 bytes, as in put).
+     *
+     * @param out   the output to write to
+     * @param type  the type code of the value
+     * @param v     the value to write
+     */
+    static void writeValue (DataOutput out, byte type, Comparable v)
+           throws IOException
+    {
+        switch (type) {
+        case INTEGER:   out.writeInt ((Integer) v);     break;
+        case LONG:      out.writeLong ((Long) v);       break;
+        case SHORT:     out.writeShort ((Short) v);     break;
+        case BYTE:      out.writeByte ((Byte) v);       break;
+        case DOUBLE:    out.writeDouble ((Double) v);   break;
+        case FLOAT:     out.writeFloat ((Float) v);     break;
+        case CHARACTER: out.writeChar ((Character) v);  break;
+        default:
+            byte [] b = ((String) v).getBytes (StandardCharsets.UTF_8);
+            out.writeInt (b.length);
+            out.write (b);
+        } // switch
+    } // writeValue
+
+    /************************************************************************************
+     * Read a single value of the given type.
+     *
+     * @param in    the input to read from
+     * @param type  the type code of the value
+     * @return  the value read
+     */
+    static Comparable readValue (DataInput in, byte type)
+           throws IOException
+    {
+        switch (type) {
+        case INTEGER:   return in.readInt ();
+        case LONG:      return in.readLong ();
+        case SHORT:     return in.readShort ();
+        case BYTE:      return in.readByte ();
+        case DOUBLE:    return in.readDouble ();
+        case FLOAT:     return in.readFloat ();
+        case CHARACTER: return in.readChar ();
+        default:
+            byte [] b = new byte [in.readInt ()];
+            in.readFully (b);
+            return new String (b, StandardCharsets.UTF_8);
+        } // switch
+    } // readValue
+
+} // TupleCodec class
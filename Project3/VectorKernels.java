@@ -0,0 +1,97 @@
+/****************************************************************************************
+ * @file  VectorKernels.java
+ *
+ * Requires the incubating Vector API:
+ *     javac --add-modules jdk.incubator.vector VectorKernels.java
+ *     java  --add-modules jdk.incubator.vector MovieDB
+ */
+
+import jdk.incubator.vector.*;
+
+/****************************************************************************************
+ * This class implements the column kernels with SIMD instructions via the Java Vector
+ * API.  Each vector comparison yields a lane mask that is ORed into the selection
+ * bitmap (the number of lanes is a power of two no larger than 64, so a mask never
+ * straddles two bitmap words); the tail of the batch that does not fill a whole
+ * vector is done one value at a time.
+ */
+class VectorKernels
+      implements ColumnKernels
+{
+    private static final VectorSpecies <Integer> INTS    = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies <Long>    LONGS   = LongVector.SPECIES_PREFERRED;
+
+    public void filter (int [] col, int n, Op op, int a, int b, long [] bits)
+    {
+        int bound = INTS.loopBound (n);
+        java.util.Arrays.fill (bits, 0, (n + 63) >>> 6, 0L);
+        for (int i = 0; i < bound; i += INTS.length ()) {
+            IntVector            v = IntVector.fromArray (INTS, col, i);
+            VectorMask <Integer> m;
+            switch (op) {
+            case EQ: m = v.compare (VectorOperators.EQ, a); break;
+            case NE: m = v.compare (VectorOperators.NE, a); break;
+            case LT: m = v.compare (VectorOperators.LT, a); break;
+            case LE: m = v.compare (VectorOperators.LE, a); break;
+            case GT: m = v.compare (VectorOperators.GT, a); break;
+            case GE: m = v.compare (VectorOperators.GE, a); break;
+            default: m = v.compare (VectorOperators.GE, a).and (v.compare (VectorOperators.LE, b));
+            } // switch
+            bits [i >>> 6] |= m.toLong () << (i & 63);
+        } // for
+        for (int i = bound; i < n; i++) {
+            if (test (col [i], op, a, b)) bits [i >>> 6] |= 1L << i;
+        } // for
+    } // filter
+
+    public void filter (long [] col, int n, Op op, long a, long b, long [] bits)
+    {
+        int bound = LONGS.loopBound (n);
+        java.util.Arrays.fill (bits, 0, (n + 63) >>> 6, 0L);
+        for (int i = 0; i < bound; i += LONGS.length ()) {
+            LongVector        v = LongVector.fromArray (LONGS, col, i);
+            VectorMask <Long> m;
+            switch (op) {
+            case EQ: m = v.compare (VectorOperators.EQ, a); break;
+            case NE: m = v.compare (VectorOperators.NE, a); break;
+            case LT: m = v.compare (VectorOperators.LT, a); break;
+            case LE: m = v.compare (VectorOperators.LE, a); break;
+            case GT: m = v.compare (VectorOperators.GT, a); break;
+            case GE: m = v.compare (VectorOperators.GE, a); break;
+            default: m = v.compare (VectorOperators.GE, a).and (v.compare (VectorOperators.LE, b));
+            } // switch
+            bits [i >>> 6] |= m.toLong () << (i & 63);
+        } // for
+        for (int i = bound; i < n; i++) {
+            if (test (col [i], op, a, b)) bits [i >>> 6] |= 1L << i;
+        } // for
+    } // filter
+
+    public String name ()
+    {
+        return "Vector";
+    } // name
+
+    /************************************************************************************
+     * Evaluate the comparison for a single value (used for the tail of a batch).
+     *
+     * @param v   the value
+     * @param op  the comparison operator
+     * @param a   the constant (lower bound for BETWEEN)
+     * @param b   the upper bound for BETWEEN
+     * @return  whether the value qualifies
+     */
+    private static boolean test (long v, Op op, long a, long b)
+    {
+        switch (op) {
+        case EQ: return v == a;
+        case NE: return v != a;
+        case LT: return v < a;
+        case LE: return v <= a;
+        case GT: return v > a;
+        case GE: return v >= a;
+        default: return v >= a && v <= b;
+        } // switch
+    } // test
+
+} // VectorKernels class
@@ -0,0 +1,270 @@
+/****************************************************************************************
+ * @file  WriteAheadLog.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/****************************************************************************************
+ * This class implements an append-only write-ahead log of the tuples inserted into a
+ * table.  Each insert is appended as a record
+ *
+ *     length (int), log sequence number (long), tuple (TupleCodec), CRC-32 (int)
+ *
+ * to an in-memory buffer, and buffered records are written and forced to disk together
+ * (group commit): when the buffer reaches GROUP_BYTES, when commit is called, or at
+ * most GROUP_DELAY milliseconds after the first record of a group was appended.  While
+ * one group is being forced, new records go into a second buffer.  After a checkpoint
+ * (the table saved up to some LSN) the log is truncated; on load, the records after the
+ * checkpoint LSN are replayed, and a torn record at the end of the log is discarded.
+ * The log is only ever appended to: a new table of the same name starts its LSNs after
+ * those of the records already logged and saved (see Table.insert), so records that
+ * load would still replay are never lost.
+ */
+class WriteAheadLog
+       implements Closeable
+{
+    /** The number of buffered bytes that triggers writing a group.
+     */
+    private static final int GROUP_BYTES = 1 << 16;
+
+    /** The longest time (in milliseconds) a record waits to be written.
+     */
+    private static final long GROUP_DELAY = 10;
+
+    /** The daemon thread that writes groups that did not fill up.
+     */
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor (r -> {
+        Thread th = new Thread (r, "wal-flusher");
+        th.setDaemon (true);
+        return th;
+    });
+
+    /** The channel on the log file.
+     */
+    private final FileChannel ch;
+
+    /** The codec for the logged tuples.
+     */
+    private final TupleCodec codec;
+
+    /** The buffer records are appended to, and the one being written.
+     */
+    private ByteBuffer active = ByteBuffer.allocate (2 * GROUP_BYTES);
+    private ByteBuffer spare  = ByteBuffer.allocate (2 * GROUP_BYTES);
+
+    /** The LSN of the last record appended.
+     */
+    private long last;
+
+    /** The LSN of the last record forced to disk.
+     */
+    private volatile long durable;
+
+    /** Lock held while a group is written and forced.
+     */
+    private final Object flushLock = new Object ();
+
+    /** Checksum for records.
+     */
+    private final CRC32 crc = new CRC32 ();
+
+    /************************************************************************************
+     * Open the log with the given path for appending.
+     *
+     * @param path     the path of the log file
+     * @param domain   the domains of the logged tuples
+     * @param lastLsn  the LSN of the last record already in the log (or checkpointed)
+     */
+    WriteAheadLog (String path, Class [] domain, long lastLsn)
+            throws IOException
+    {
+        ch      = FileChannel.open (Paths.get (path), CREATE, WRITE, APPEND);
+        codec   = new TupleCodec (domain);
+        last    = lastLsn;
+        durable = lastLsn;
+    } // constructor
+
+    /************************************************************************************
+     * Append a record for tuple t.  The record is durable once commit returns (or the
+     * group it belongs to has been written).
+     *
+     * @param t  the inserted tuple
+     * @return  the LSN of the record
+     */
+    long append (Comparable [] t)
+            throws IOException
+    {
+        long    lsn;
+        boolean first, full;
+        synchronized (this) {
+            lsn   = ++last;
+            first = active.position () == 0;
+            int start = active.position ();
+            for ( ; ; ) {
+                try {
+                    active.putInt (0).putLong (lsn);
+                    codec.put (active, t);
+                    break;
+                } catch (BufferOverflowException ex) {
+                    ByteBuffer bigger = ByteBuffer.allocate (2 * active.capacity ());
+                    active.flip ().limit (start);
+                    active = bigger.put (active);
+                } // try
+            } // for
+            crc.reset ();
+            crc.update (active.array (), start + 4, active.position () - start - 4);
+            if (active.remaining () < 4) {
+                ByteBuffer bigger = ByteBuffer.allocate (2 * active.capacity ());
+                active = bigger.put (active.flip ());
+            } // if
+            active.putInt ((int) crc.getValue ());
+            active.putInt (start, active.position () - start);
+            full = active.position () >= GROUP_BYTES;
+        } // synchronized
+
+        if (full)       flush ();
+        else if (first) FLUSHER.schedule (this::flushQuietly, GROUP_DELAY, TimeUnit.MILLISECONDS);
+        return lsn;
+    } // append
+
+    /************************************************************************************
+     * Wait until every record appended so far is durable.
+     */
+    void commit ()
+            throws IOException
+    {
+        long lsn;
+        synchronized (this) { lsn = last; }
+        if (durable < lsn) flush ();
+    } // commit
+
+    /************************************************************************************
+     * Record that the table has been saved up to the given LSN, so the log's records
+     * are no longer needed: the log is emptied unless records were appended since.
+     *
+     * @param lsn  the LSN the table was saved up to
+     */
+    void checkpoint (long lsn)
+            throws IOException
+    {
+        synchronized (flushLock) {
+            flush ();
+            synchronized (this) {
+                if (last != lsn) return;
+            } // synchronized
+            ch.truncate (0);
+            ch.force (true);
+        } // synchronized
+    } // checkpoint
+
+    /************************************************************************************
+     * Return the LSN of the last record appended.
+     *
+     * @return  the last LSN
+     */
+    synchronized long lastLsn ()
+    {
+        return last;
+    } // lastLsn
+
+    /************************************************************************************
+     * Write the buffered records and close the log.
+     */
+    public void close ()
+            throws IOException
+    {
+        flush ();
+        ch.close ();
+    } // close
+
+    /************************************************************************************
+     * Replay the log with the given path, passing each tuple whose record has an LSN
+     * after the given one to apply.  Replay stops at the first torn or corrupt record,
+     * which (with anything after it) is cut off the log.
+     *
+     * @param path    the path of the log file
+     * @param domain  the domains of the logged tuples
+     * @param after   the LSN up to which the tuples are already in the table
+     * @param apply   the action applying a logged tuple to the table, or null to only
+     *                find the last LSN
+     * @return  the LSN of the last valid record (or after, if none is later)
+     */
+    static long replay (String path, Class [] domain, long after, Consumer <Comparable []> apply)
+            throws IOException
+    {
+        TupleCodec codec = (apply == null) ? null : new TupleCodec (domain);
+        CRC32      crc   = new CRC32 ();
+        long       last  = after;
+
+        try (FileChannel ch = FileChannel.open (Paths.get (path), READ, WRITE)) {
+            long size = ch.size ();
+            if (size > Integer.MAX_VALUE) throw new IOException (path + " is too large to replay");
+            ByteBuffer buf = ByteBuffer.allocate ((int) size);
+            while (buf.hasRemaining () && ch.read (buf) >= 0) ;
+            buf.flip ();
+
+            int pos = 0;
+            while (pos + 4 <= buf.limit ()) {
+                int len = buf.getInt (pos);
+                if (len < 16 || pos + len > buf.limit ()) break;
+                crc.reset ();
+                crc.update (buf.array (), pos + 4, len - 8);
+                if ((int) crc.getValue () != buf.getInt (pos + len - 4)) break;
+
+                long lsn = buf.getLong (pos + 4);
+                if (lsn > after && apply != null) apply.accept (codec.get (buf, pos + 12));
+                last = Math.max (last, lsn);
+                pos += len;
+            } // while
+
+            if (pos < size) ch.truncate (pos);
+        } // try
+        return last;
+    } // replay
+
+    /************************************************************************************
+     * Write the buffered records as one group and force them to disk.
+     */
+    private void flush ()
+            throws IOException
+    {
+        synchronized (flushLock) {
+            ByteBuffer group;
+            long       upTo;
+            synchronized (this) {
+                if (active.position () == 0) return;
+                group  = active;
+                active = spare;
+                spare  = group;
+                upTo   = last;
+            } // synchronized
+            group.flip ();
+            while (group.hasRemaining ()) ch.write (group);
+            ch.force (false);
+            group.clear ();
+            durable = upTo;
+        } // synchronized
+    } // flush
+
+    /************************************************************************************
+     * Write the buffered records from the flusher thread, reporting any failure.
+     */
+    private void flushQuietly ()
+    {
+        try {
+            if (ch.isOpen ()) flush ();
+        } catch (IOException ex) {
+            System.out.println ("log: IO Exception");
+            ex.printStackTrace ();
+        } // try
+    } // flushQuietly
+
+} // WriteAheadLog class